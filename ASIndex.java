@@ -0,0 +1,143 @@
+
+//
+// The AS annotation of a chromosome, compiled once into a cache file of
+//  a bitmap of the coding positions and a table of the amino acids of the
+//  three alternative bases, and memory mapped from it
+//
+
+public final class ASIndex {
+
+	private static final String _CACHE_SUFFIX = ".as";
+
+	private final java.nio.ByteBuffer _data;
+	private final int _count;          // NB. number of positions in the table
+	private final int _bitmap_length;  // NB. number of positions in the bitmap
+	private final int _alt_offset, _bitmap_offset;
+
+	private ASIndex(java.nio.ByteBuffer data) {
+		_data = data;
+		_count = data.getInt(0);
+		_bitmap_length = data.getInt(4);
+		_alt_offset = 8 + 4 * _count;
+		_bitmap_offset = _alt_offset + 3 * _count;
+	}
+
+	// get the index of an AS annotation file (shared between all the threads)
+	// NB. without ReferenceGenome.cache_folder, the index is kept in memory instead
+	public static ASIndex open(final String file_as) throws java.io.IOException {
+		if (ReferenceGenome.cache_folder == null)
+			return AnnotationCache.get("as:" + file_as, new AnnotationCache.Loader<ASIndex>() {
+				public ASIndex load() throws java.io.IOException {
+					java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(1 << 20);
+					_write(file_as, out);
+					return new ASIndex(java.nio.ByteBuffer.wrap(out.toByteArray()));
+				}
+			});
+
+		final java.io.File file_cache = ReferenceGenome.cacheFile(file_as, _CACHE_SUFFIX);
+		return AnnotationCache.getMapped("as:" + file_cache.getPath(), new AnnotationCache.Loader<ASIndex>() {
+			public ASIndex load() throws java.io.IOException {
+				return new ASIndex(ReferenceGenome.mapCacheFile(file_as, file_cache, new ReferenceGenome.CacheWriter() {
+					public void write(java.io.OutputStream out) throws java.io.IOException {
+						_write(file_as, out);
+					}
+				}));
+			}
+		});
+	}
+
+	// check if pos is coding
+	// NB. as before, the first line of the file does not count (it is usually a header)
+	public boolean coding(int pos) {
+		if (pos < 0 || pos >= _bitmap_length)
+			return false;
+		return (_data.get(_bitmap_offset + (pos >>> 3)) & (1 << (pos & 7))) != 0;
+	}
+
+	// index of pos in the table, or -1 if it is not annotated
+	public int find(int pos) {
+		int lo = 0, hi = _count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int mid_pos = _data.getInt(8 + 4 * mid);
+			if (mid_pos < pos)
+				lo = mid + 1;
+			else if (mid_pos > pos)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	// amino acid of the alternative base k (0, 1 or 2) at index, or 0 if it is not a single letter
+	public char aminoAcid(int index, int k) {
+		return (char) (_data.get(_alt_offset + 3 * index + k) & 0xff);
+	}
+
+	// check if the alternative base k at index is a stop codon
+	public boolean nonsense(int index, int k) {
+		if (k < 0 || k > 2)
+			throw new IndexOutOfBoundsException("k must be 0, 1 or 2");
+		return aminoAcid(index, k) == '*';
+	}
+
+	// compile the annotation of 7 columns, the position, ..., and the amino acids of the three alternatives
+	// NB. if a position appears several times, the last line wins
+	private static void _write(String file_as, java.io.OutputStream out) throws java.io.IOException {
+		int count = 0;
+		long[] keys = new long[1 << 16];   // NB. the position, and the record in the low bits
+		byte[] alt = new byte[3 * keys.length];
+		boolean header_record = false;
+
+		java.io.BufferedReader input = new java.io.BufferedReader(new java.io.InputStreamReader(ZipFilter.filterInputStream(ZipOverlay.fileInputStream(file_as))));
+		try {
+			int line = 0;
+			for (String s; (s = input.readLine()) != null; ++line) {
+				String[] t = s.split("\t");
+				if (t.length != 7)
+					continue;
+
+				if (count == keys.length) {
+					keys = java.util.Arrays.copyOf(keys, 2 * count);
+					alt = java.util.Arrays.copyOf(alt, 3 * keys.length);
+				}
+				if (line == 0)
+					header_record = true;
+				keys[count] = (long) Integer.parseInt(t[0]) << 32 | count;
+				for (int k = 0; k < 3; ++k)
+					alt[3 * count + k] = t[4 + k].length() == 1 ? (byte) t[4 + k].charAt(0) : 0;
+				++count;
+			}
+		}
+		finally {
+			input.close();
+		}
+
+		keys = java.util.Arrays.copyOf(keys, count);
+		java.util.Arrays.sort(keys);
+
+		int n = 0;
+		int[] pos = new int[count];
+		byte[] pos_alt = new byte[3 * count];
+		java.util.BitSet bitmap = new java.util.BitSet();
+		for (int i = 0; i < count; ++i) {
+			int p = (int) (keys[i] >> 32), r = (int) keys[i];
+			if (n == 0 || pos[n - 1] != p)
+				pos[n++] = p;
+			System.arraycopy(alt, 3 * r, pos_alt, 3 * (n - 1), 3);
+			if (p >= 0 && !(header_record && r == 0))
+				bitmap.set(p);
+		}
+
+		java.io.DataOutputStream data = new java.io.DataOutputStream(out);
+		data.writeInt(n);
+		data.writeInt(bitmap.length());
+		for (int i = 0; i < n; ++i)
+			data.writeInt(pos[i]);
+		data.write(pos_alt, 0, 3 * n);
+		data.write(bitmap.toByteArray());
+		data.flush();
+	}
+
+} // ASIndex
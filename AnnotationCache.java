@@ -0,0 +1,74 @@
+
+//
+// A simple in-memory cache for the decoded annotation data, so that
+//  several entities analyzed in the same JVM can share it
+//
+
+public final class AnnotationCache {
+
+	public static interface Loader<T> {
+		public T load() throws java.io.IOException;
+	}
+
+	private static volatile boolean _enabled = false;
+	private static final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Object>> _entries = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Object>>();
+	private static final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Object>> _mapped = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Object>>();
+
+	// NB. disabled by default, as a single run would just pin the memory
+	public static void setEnabled(boolean enabled) {
+		_enabled = enabled;
+		if (!enabled)
+			_entries.clear();
+	}
+
+	public static boolean isEnabled() {
+		return _enabled;
+	}
+
+	// get the data for key, loading it at most once (the data must not be modified)
+	public static <T> T get(String key, final Loader<T> loader) throws java.io.IOException {
+		if (!_enabled)
+			return loader.load();
+
+		return _get(_entries, key, loader);
+	}
+
+	// get memory mapped data for key, which is always kept as it does not take up heap
+	public static <T> T getMapped(String key, final Loader<T> loader) throws java.io.IOException {
+		return _get(_mapped, key, loader);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T _get(java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Object>> entries, String key, final Loader<T> loader) throws java.io.IOException {
+		java.util.concurrent.FutureTask<Object> task = new java.util.concurrent.FutureTask<Object>(new java.util.concurrent.Callable<Object>() {
+			public Object call() throws java.io.IOException {
+				return loader.load();
+			}
+		});
+
+		java.util.concurrent.FutureTask<Object> entry = entries.putIfAbsent(key, task);
+		if (entry == null) {
+			entry = task;
+			entry.run();
+		}
+
+		try {
+			return (T) entry.get();
+		}
+		catch (java.lang.InterruptedException error) {
+			Thread.currentThread().interrupt();
+			throw new java.io.InterruptedIOException(key);
+		}
+		catch (java.util.concurrent.ExecutionException error) {
+			// NB. don't cache failures
+			entries.remove(key, entry);
+
+			if (error.getCause() instanceof java.io.IOException)
+				throw (java.io.IOException) error.getCause();
+			if (error.getCause() instanceof java.lang.RuntimeException)
+				throw (java.lang.RuntimeException) error.getCause();
+			throw new java.lang.RuntimeException(error.getCause());
+		}
+	}
+
+} // AnnotationCache
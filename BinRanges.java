@@ -0,0 +1,71 @@
+
+//
+// Splits the bins of each chromosome into ranges of a fixed size, to be run
+//  as separate tasks so that the long chromosomes don't hold up a stage while
+//  the other threads are idle
+//
+// NB. the ranges depend only on the numbers of bins, and the random numbers
+//  of a bin are derived from its chromosome and its index by SeedTree, so that
+//  the results don't depend on the ranges
+//
+
+public final class BinRanges {
+
+	private final int[] _chr, _start, _end;
+
+	// split counts[i] bins of each chromosome i into ranges of size bins
+	public BinRanges(int[] counts, int size) {
+		if (size < 1)
+			throw new java.lang.IllegalArgumentException("size must be positive");
+
+		int n = 0;
+		for (int i = 0; i < counts.length; ++i)
+			n += (counts[i] + size - 1) / size;
+
+		_chr = new int[n];
+		_start = new int[n];
+		_end = new int[n];
+
+		int k = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			int ranges = (counts[i] + size - 1) / size;
+			for (int r = 0; r < ranges; ++r, ++k) {
+				_chr[k] = i;
+				_start[k] = r * size;
+				_end[k] = Math.min(counts[i], (r + 1) * size);
+			}
+		}
+	}
+
+	// split the bins of the mutations of each chromosome
+	public BinRanges(MutationStore[] mutations, int size) {
+		this(_bins(mutations), size);
+	}
+
+	private static int[] _bins(MutationStore[] mutations) {
+		int[] bins = new int[mutations.length];
+		for (int i = 0; i < mutations.length; ++i)
+			bins[i] = mutations[i].bins();
+		return bins;
+	}
+
+	// number of the ranges
+	public int size() {
+		return _chr.length;
+	}
+
+	public int chr(int k) {
+		return _chr[k];
+	}
+
+	// first bin of range k
+	public int start(int k) {
+		return _start[k];
+	}
+
+	// end of range k (exclusive)
+	public int end(int k) {
+		return _end[k];
+	}
+
+} // BinRanges
@@ -0,0 +1,146 @@
+
+//
+// Scores the clustering of the mutations in a bin from the minimum distances
+//  between the mutations of each pair of donors, found by sweeps over the
+//  positions sorted once, in O(n d) instead of comparing all the pairs of
+//  mutations of all the pairs of donors
+//
+// NB. the donors are numbered in order of their first mutation added, and the
+//  pairs are summed in that order, as with the lists of the positions before
+//
+
+public final class ClumpKernel {
+
+	private static final double _GAMMA = Math.log(0.5) / 100.0;
+
+	private int[] _pos = new int[64], _group = new int[64];
+	private int _size = 0;
+
+	private int[] _groups_of_donors = new int[0];   // NB. -1 if not seen
+	private int[] _donors = new int[64];
+	private int _groups = 0;
+
+	private long[] _keys = new long[64];
+	private int[] _sorted_pos = new int[64], _sorted_group = new int[64];
+	private int[] _min = new int[64];
+	private boolean _dirty = false;
+
+	// start a new bin
+	public void clear() {
+		for (int i = 0; i < _groups; ++i)
+			_groups_of_donors[_donors[i]] = -1;
+		_size = 0;
+		_groups = 0;
+		_dirty = true;
+	}
+
+	// add a mutation of donor (a non-negative id)
+	public void add(int pos, int donor) {
+		if (donor >= _groups_of_donors.length) {
+			int length = _groups_of_donors.length;
+			_groups_of_donors = java.util.Arrays.copyOf(_groups_of_donors, Math.max(2 * length, donor + 1));
+			java.util.Arrays.fill(_groups_of_donors, length, _groups_of_donors.length, -1);
+		}
+		int group = _groups_of_donors[donor];
+		if (group == -1) {
+			if (_groups == _donors.length)
+				_donors = java.util.Arrays.copyOf(_donors, 2 * _groups);
+			group = _groups;
+			_donors[_groups++] = donor;
+			_groups_of_donors[donor] = group;
+		}
+
+		if (_size == _pos.length) {
+			_pos = java.util.Arrays.copyOf(_pos, 2 * _size);
+			_group = java.util.Arrays.copyOf(_group, 2 * _size);
+		}
+		_pos[_size] = pos;
+		_group[_size] = group;
+		++_size;
+		_dirty = true;
+	}
+
+	// clustering score, the sum of exp(gamma * d) over the pairs of donors, each weighted by
+	//  1 / factor_clumps[d] unless factor_clumps is null
+	public double score(double[] factor_clumps) {
+		_sort();
+
+		double sum = 0;
+		for (int a = 0; a < _groups - 1; ++a) {
+			_minDistances(a);
+			for (int b = a + 1; b < _groups; ++b) {
+				double d = _min[b];
+				if (factor_clumps != null)
+					sum += Math.exp(_GAMMA * d) / factor_clumps[Math.min(factor_clumps.length - 1, (int) d)];
+				else
+					sum += Math.exp(_GAMMA * d);
+			}
+		}
+		return sum;
+	}
+
+	// add the minimum distances of the pairs of donors to the histogram (those that fit)
+	public void addDistances(int[] histo) {
+		_sort();
+
+		for (int a = 0; a < _groups - 1; ++a) {
+			_minDistances(a);
+			for (int b = a + 1; b < _groups; ++b)
+				if (_min[b] < histo.length)
+					++histo[_min[b]];
+		}
+	}
+
+	private void _sort() {
+		if (!_dirty)
+			return;
+
+		if (_keys.length < _size) {
+			_keys = new long[_pos.length];
+			_sorted_pos = new int[_pos.length];
+			_sorted_group = new int[_pos.length];
+		}
+		for (int i = 0; i < _size; ++i)
+			_keys[i] = (long) _pos[i] << 32 | i;
+		java.util.Arrays.sort(_keys, 0, _size);
+		for (int i = 0; i < _size; ++i) {
+			int k = (int) _keys[i];
+			_sorted_pos[i] = _pos[k];
+			_sorted_group[i] = _group[k];
+		}
+
+		if (_min.length < _groups)
+			_min = new int[_donors.length];
+		_dirty = false;
+	}
+
+	// minimum distances from the mutations of a to those of the later donors
+	// NB. the nearest mutation of a is the last one before or the first one after
+	private void _minDistances(int a) {
+		java.util.Arrays.fill(_min, a + 1, _groups, Integer.MAX_VALUE);
+
+		boolean seen = false;
+		int last = 0;
+		for (int i = 0; i < _size; ++i) {
+			int group = _sorted_group[i];
+			if (group == a) {
+				seen = true;
+				last = _sorted_pos[i];
+			}
+			else if (seen && group > a)
+				_min[group] = Math.min(_min[group], _sorted_pos[i] - last);
+		}
+
+		seen = false;
+		for (int i = _size - 1; i >= 0; --i) {
+			int group = _sorted_group[i];
+			if (group == a) {
+				seen = true;
+				last = _sorted_pos[i];
+			}
+			else if (seen && group > a)
+				_min[group] = Math.min(_min[group], last - _sorted_pos[i]);
+		}
+	}
+
+} // ClumpKernel
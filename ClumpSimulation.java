@@ -0,0 +1,93 @@
+
+//
+// Simulates the positions of the mutations of the samples in a bin, drawing
+//  them uniformly from the alignable intervals of the bin with a table of the
+//  cumulative lengths, and scores their clustering with a ClumpKernel
+//
+// NB. the random numbers are drawn as before, an offset into the total length
+//  and then a position in the interval that it falls in, so that the
+//  simulations stay the same
+//
+
+public final class ClumpSimulation {
+
+	private static final int _ATTEMPTS = 20;
+
+	private final int[] _start, _length, _cumulative;
+	private final boolean _sorted;         // NB. no negative lengths, so that the table can be searched
+	private final int[] _counts;
+	private final ClumpKernel _kernel = new ClumpKernel();
+
+	// simulate counts[l] positions for each sample l in the intervals [start, end)
+	public ClumpSimulation(java.util.List<int[]> intervals, int[] counts) {
+		_start = new int[intervals.size()];
+		_length = new int[intervals.size()];
+		_cumulative = new int[intervals.size() + 1];
+		boolean sorted = true;
+		for (int i = 0; i < intervals.size(); ++i) {
+			_start[i] = intervals.get(i)[0];
+			_length[i] = intervals.get(i)[1] - intervals.get(i)[0];
+			_cumulative[i + 1] = _cumulative[i] + _length[i];
+			if (_length[i] < 0)
+				sorted = false;
+		}
+		_sorted = sorted;
+
+		_counts = counts;
+	}
+
+	// draw the positions of all the samples, one after the other
+	public void draw(java.util.Random random) {
+		_kernel.clear();
+		for (int l = 0; l < _counts.length; ++l)
+			for (int i = 0; i < _counts[l]; ++i)
+				_kernel.add(select(random), l);
+	}
+
+	// draw a position, or -1 if none was found
+	public int select(java.util.Random random) {
+		for (int attempt = 0; attempt < _ATTEMPTS; ++attempt) {
+			int r = (int) (random.nextDouble() * _cumulative[_length.length]);
+			int i = _find(r);
+			if (i != -1) {
+				int pos = (int) (random.nextDouble() * _length[i] + _start[i]);
+				if (pos != -1)
+					return pos;
+			}
+		}
+		return -1;
+	}
+
+	// interval i with r in [cumulative[i], cumulative[i + 1]), the first one if several
+	private int _find(int r) {
+		if (!_sorted) {
+			for (int i = 0; i < _length.length; ++i)
+				if (_cumulative[i] <= r && r < _cumulative[i] + _length[i])
+					return i;
+			return -1;
+		}
+
+		if (r < 0 || r >= _cumulative[_length.length])
+			return -1;
+		int lo = 0, hi = _length.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_cumulative[mid + 1] > r)
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return lo;
+	}
+
+	// clustering score of the positions drawn
+	public double score() {
+		return _kernel.score(null);
+	}
+
+	// add the histogram of the distances between the samples
+	public void addDistances(int[] histo) {
+		_kernel.addDistances(histo);
+	}
+
+} // ClumpSimulation
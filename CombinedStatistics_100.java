@@ -29,89 +29,88 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Hashtable;
 
-import org.apache.commons.math3.distribution.BinomialDistribution;
 import org.apache.commons.math3.distribution.ChiSquaredDistribution;
-import org.apache.commons.math3.distribution.PoissonDistribution;
 import org.apache.commons.math3.special.Gamma;
 
 import Jama.Matrix;
 
 public class CombinedStatistics_100 {
 	static String separator="/";	//separator for file names (changes between Windows and Unix)
-	static int shift_mut=25000;//0;//100000;//75000;//50000;	//offset parameters of the intervals (can be 0kb, 25kb, 50kb or 75kb)
-	static String entity_sel=""; //cancer type for which to perform the analysis
+	int shift_mut=25000;//0;//100000;//75000;//50000;	//offset parameters of the intervals (can be 0kb, 25kb, 50kb or 75kb)
+	String entity_sel=""; //cancer type for which to perform the analysis
 	
-	static String folder_auxiliary=separator; //folder in which the intermediate files are localized 
-	static String subfolder_auxiliary=folder_auxiliary+entity_sel+"_100kb_"+shift_mut+separator;//output folder of the intermediate files generated by this method
-	static String folder_significance="";//output folder for the final significance file generated by this method 
-	static String folder_annotation="";	//Hg19 annotation folder (e.g. epigenomic data). Will be downloaded if it cannot be found
-	static String folder_counts_all=""; //output folder which counts the number of mutations for each cancer type and is used for background calibration. Might be re-usable when running the method multiple times 
+	String folder_auxiliary=separator; //folder in which the intermediate files are localized 
+	String subfolder_auxiliary=folder_auxiliary+entity_sel+"_100kb_"+shift_mut+separator;//output folder of the intermediate files generated by this method
+	String folder_significance="";//output folder for the final significance file generated by this method 
+	String folder_annotation="";	//Hg19 annotation folder (e.g. epigenomic data). Will be downloaded if it cannot be found
+	String folder_counts_all=""; //output folder which counts the number of mutations for each cancer type and is used for background calibration. Might be re-usable when running the method multiple times 
 	
 	
-	static String file_splice_ai=folder_annotation+"SNV_Raw_10"+separator;	//annotation of splice sites
-	static String file_dichotomous=folder_annotation+"Align36mer_Dichotomous"+separator+"Align36mer_"; //alignability of mutations based on their surrounding 36mer. if there are multiple possible possibilities for alignment, mutations can result from misalignment due to sequencing errors 
-	static String file_exclude_regions_liver=folder_annotation+"ExcludeRegions"+separator+"ExcludeCTCF_Regions_Liver.txt"; //TAD boundary regions to exclude from the analysis, since they are hypermutated in some cancer types
-	static String file_exclude_regions_non_liver=folder_annotation+"ExcludeRegions"+separator+"ExcludeCTCF_Regions_NonLiver.txt"; //TAD boundary regions to exclude from the analysis, since they are hypermutated in some cancer types
+	String file_splice_ai=folder_annotation+"SNV_Raw_10"+separator;	//annotation of splice sites
+	String file_dichotomous=folder_annotation+"Align36mer_Dichotomous"+separator+"Align36mer_"; //alignability of mutations based on their surrounding 36mer. if there are multiple possible possibilities for alignment, mutations can result from misalignment due to sequencing errors 
+	String file_exclude_regions_liver=folder_annotation+"ExcludeRegions"+separator+"ExcludeCTCF_Regions_Liver.txt"; //TAD boundary regions to exclude from the analysis, since they are hypermutated in some cancer types
+	String file_exclude_regions_non_liver=folder_annotation+"ExcludeRegions"+separator+"ExcludeCTCF_Regions_NonLiver.txt"; //TAD boundary regions to exclude from the analysis, since they are hypermutated in some cancer types
 	
-	static String file_epi_signal_1000=folder_annotation+"SummarizedSignal"+separator+"Signal1000_Chr"; //Epignenomic signal 1kb
-	static String file_epi_signal_10000=folder_annotation+"SummarizedSignal"+separator+"Signal10000_Chr"; //Epignenomic signal 10kb
-	static String file_epi_signal_100000=folder_annotation+"SummarizedSignal"+separator+"Signal100000_Chr"; //Epignenomic signal 100kb
-	static String file_as_annotation=folder_annotation+"ASAnnotationHg19"+separator+"ASAnnotation_chr"; //AS annotation for coding regions to identify destructive mutations
-	static String file_exons=folder_annotation+"Hg19"+separator+"Exons_Hg19.txt"; //Annotation of Exonic regions
-	static String file_coverage=folder_annotation+"CoverageFiles"+separator+"Coverage_"+shift_mut+".txt"; //gnomAD coverage files to exclude regions of low coverage
-	static String file_genome=folder_annotation+"Hg19"+separator+"chr"; //Reference genome
+	String file_epi_signal_1000=folder_annotation+"SummarizedSignal"+separator+"Signal1000_Chr"; //Epignenomic signal 1kb
+	String file_epi_signal_10000=folder_annotation+"SummarizedSignal"+separator+"Signal10000_Chr"; //Epignenomic signal 10kb
+	String file_epi_signal_100000=folder_annotation+"SummarizedSignal"+separator+"Signal100000_Chr"; //Epignenomic signal 100kb
+	String file_as_annotation=folder_annotation+"ASAnnotationHg19"+separator+"ASAnnotation_chr"; //AS annotation for coding regions to identify destructive mutations
+	String file_exons=folder_annotation+"Hg19"+separator+"Exons_Hg19.txt"; //Annotation of Exonic regions
+	String file_coverage=folder_annotation+"CoverageFiles"+separator+"Coverage_"+shift_mut+".txt"; //gnomAD coverage files to exclude regions of low coverage
+	String file_genome=folder_annotation+"Hg19"+separator+"chr"; //Reference genome
 	
 	
-	static String file_splice_count=subfolder_auxiliary+"SpliceCount.txt"+SignificanceNoncoding.out_suffix; //output file of the number of splice site mutations per interval
+	String file_splice_count=subfolder_auxiliary+"SpliceCount.txt"+SignificanceNoncoding.out_suffix; //output file of the number of splice site mutations per interval
 
-	static String file_clumps_count_combi=subfolder_auxiliary+"ClumpsCountCombi_100.txt"+SignificanceNoncoding.out_suffix; //output file of the clustering score in each interval
-	static String file_factor_clumps=subfolder_auxiliary+"FactorClumps_100.txt"+SignificanceNoncoding.out_suffix; //output files of the weights to normalize clustering scores to a uniform distribution
-	static String file_max_factor=subfolder_auxiliary+"FactorMax_100.txt"+SignificanceNoncoding.out_suffix; //output files of the factors to model distribution variance of clustering scores depending on their average
-	static String file_clumps_count_combi_indel=subfolder_auxiliary+"ClumpsCountCombiIndel_100.txt"+SignificanceNoncoding.out_suffix; //output file of the clustering score in each interval (indels only)
-	static String file_factor_clumps_indel=subfolder_auxiliary+"FactorClumpsIndel_100.txt"+SignificanceNoncoding.out_suffix; //output files of the weights to normalize clustering scores to a uniform distribution (indels only)
-	static String file_max_factor_indel=subfolder_auxiliary+"FactorMaxIndel_100.txt"+SignificanceNoncoding.out_suffix; //output files of the factors to model distribution variance of clustering scores depending on their average (indels only)
+	String file_clumps_count_combi=subfolder_auxiliary+"ClumpsCountCombi_100.txt"+SignificanceNoncoding.out_suffix; //output file of the clustering score in each interval
+	String file_factor_clumps=subfolder_auxiliary+"FactorClumps_100.txt"+SignificanceNoncoding.out_suffix; //output files of the weights to normalize clustering scores to a uniform distribution
+	String file_max_factor=subfolder_auxiliary+"FactorMax_100.txt"+SignificanceNoncoding.out_suffix; //output files of the factors to model distribution variance of clustering scores depending on their average
+	String file_clumps_count_combi_indel=subfolder_auxiliary+"ClumpsCountCombiIndel_100.txt"+SignificanceNoncoding.out_suffix; //output file of the clustering score in each interval (indels only)
+	String file_factor_clumps_indel=subfolder_auxiliary+"FactorClumpsIndel_100.txt"+SignificanceNoncoding.out_suffix; //output files of the weights to normalize clustering scores to a uniform distribution (indels only)
+	String file_max_factor_indel=subfolder_auxiliary+"FactorMaxIndel_100.txt"+SignificanceNoncoding.out_suffix; //output files of the factors to model distribution variance of clustering scores depending on their average (indels only)
 
-	static String file_ww_indel=subfolder_auxiliary+"WW_Indel.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (1kb, indels only)
-	static String file_ww_10_indel=subfolder_auxiliary+"WW_10_Indel.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (10kb, indels only)
-	static String file_ww_100_indel=subfolder_auxiliary+"WW_100_Indel.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (100kb, indels only)
-	static String file_ww_combi=subfolder_auxiliary+"WW_Combi.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (1kb, all mutations)
-	static String file_ww_10_combi=subfolder_auxiliary+"WW_10_Combi.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (10kb, indels only)
-	static String file_ww_100_combi=subfolder_auxiliary+"WW_100_Combi.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (100kb, indels only)
+	String file_ww_indel=subfolder_auxiliary+"WW_Indel.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (1kb, indels only)
+	String file_ww_10_indel=subfolder_auxiliary+"WW_10_Indel.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (10kb, indels only)
+	String file_ww_100_indel=subfolder_auxiliary+"WW_100_Indel.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (100kb, indels only)
+	String file_ww_combi=subfolder_auxiliary+"WW_Combi.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (1kb, all mutations)
+	String file_ww_10_combi=subfolder_auxiliary+"WW_10_Combi.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (10kb, indels only)
+	String file_ww_100_combi=subfolder_auxiliary+"WW_100_Combi.txt"+SignificanceNoncoding.out_suffix; //Output file of weights for weighted local average (100kb, indels only)
 
 		
-	static String file_count_epigenomic_combi1=subfolder_auxiliary+"EpigenomicCombi1_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (epigenomic model)
-	static String file_count_epigenomic_combi2=subfolder_auxiliary+"EpigenomicCombi2_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (epigenomic model)
-	static String file_count_epigenomic_combi3=subfolder_auxiliary+"EpigenomicCombi3_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (epigenomic model)
-	static String file_count_epigenomic_indel1=subfolder_auxiliary+"EpigenomicIndel1_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (epigenomic model)
-	static String file_count_epigenomic_indel2=subfolder_auxiliary+"EpigenomicIndel2_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (epigenomic model)
-	static String file_count_epigenomic_indel3=subfolder_auxiliary+"EpigenomicIndel3_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (epigenomic model)
-	static String file_p_epigenomic_combi=subfolder_auxiliary+"PEpigenomiCombi100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model)
-	static String file_p_epigenomic_indel=subfolder_auxiliary+"PEpigenomiIndel100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model, indels only)
+	String file_count_epigenomic_combi1=subfolder_auxiliary+"EpigenomicCombi1_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (epigenomic model)
+	String file_count_epigenomic_combi2=subfolder_auxiliary+"EpigenomicCombi2_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (epigenomic model)
+	String file_count_epigenomic_combi3=subfolder_auxiliary+"EpigenomicCombi3_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (epigenomic model)
+	String file_count_epigenomic_indel1=subfolder_auxiliary+"EpigenomicIndel1_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (epigenomic model)
+	String file_count_epigenomic_indel2=subfolder_auxiliary+"EpigenomicIndel2_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (epigenomic model)
+	String file_count_epigenomic_indel3=subfolder_auxiliary+"EpigenomicIndel3_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (epigenomic model)
+	String file_p_epigenomic_combi=subfolder_auxiliary+"PEpigenomiCombi100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model)
+	String file_p_epigenomic_indel=subfolder_auxiliary+"PEpigenomiIndel100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model, indels only)
 	
 	
-	static String file_count_indel1=subfolder_auxiliary+"CountIndel1_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (similarity-based model)
-	static String file_count_indel2=subfolder_auxiliary+"CountIndel2_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (similarity-based model)
-	static String file_count_indel3=subfolder_auxiliary+"CountIndel3_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (similarity-based model)
-	static String file_count_combi1=subfolder_auxiliary+"CountCombi1_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (similarity-based model)
-	static String file_count_combi2=subfolder_auxiliary+"CountCombi2_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (similarity-based model)
-	static String file_count_combi3=subfolder_auxiliary+"CountCombi3_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (similarity-based model)
-	static String file_p_indel=subfolder_auxiliary+"PIndel100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model, indels only)
-	static String file_p_combi=subfolder_auxiliary+"PCombi100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model)
+	String file_count_indel1=subfolder_auxiliary+"CountIndel1_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (similarity-based model)
+	String file_count_indel2=subfolder_auxiliary+"CountIndel2_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (similarity-based model)
+	String file_count_indel3=subfolder_auxiliary+"CountIndel3_100.txt"+SignificanceNoncoding.out_suffix; //output file for indel counts (similarity-based model)
+	String file_count_combi1=subfolder_auxiliary+"CountCombi1_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (similarity-based model)
+	String file_count_combi2=subfolder_auxiliary+"CountCombi2_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (similarity-based model)
+	String file_count_combi3=subfolder_auxiliary+"CountCombi3_100.txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts (similarity-based model)
+	String file_p_indel=subfolder_auxiliary+"PIndel100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model, indels only)
+	String file_p_combi=subfolder_auxiliary+"PCombi100.txt"+SignificanceNoncoding.out_suffix; //output file for count-based pvalues (epigenomic model)
 	 
-	static String file_out_sign=folder_significance+"Significance_100_"+entity_sel+"_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; //output file of the combined significance that includes all p-values computed by this method 
+	String file_out_sign=folder_significance+"Significance_100_"+entity_sel+"_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; //output file of the combined significance that includes all p-values computed by this method 
 	
-	static String file_n_indel_quality2=folder_counts_all+"n_indel_quality2_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; //output file for indel counts of all cancer types (used for background calibration)
-	static String file_n_quality2=folder_counts_all+"n_quality2_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts of all cancer types (used for background calibration)
+	String file_n_indel_quality2=folder_counts_all+"n_indel_quality2_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; //output file for indel counts of all cancer types (used for background calibration)
+	String file_n_quality2=folder_counts_all+"n_quality2_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; //output file for mutation counts of all cancer types (used for background calibration)
 	
-	static String[][] files_donors=null; //internal file: list of sample IDs per cancer types
-	static String[][][] files_mut_snv=null; //internal file: separate files of SNV mutations per cancer types and chromosome
-	static String[][][] files_mut_indel=null; //internal file: separate files of indel mutations per cancer types and chromosome
+	String[][] files_donors=null; //internal file: list of sample IDs per cancer types
+	String[][][] files_mut_snv=null; //internal file: separate files of SNV mutations per cancer types and chromosome
+	String[][][] files_mut_indel=null; //internal file: separate files of indel mutations per cancer types and chromosome
 	
 	//cancer types used for background calibration (this default setting can be changes by parsing an argument to the method)
-	static String[] entities_all=new String[]{"Biliary","Bladder","Brain","Breast","Cervix","Colorectal","Endocrine","Endometrium","Esophagus","Gastric","HeadNeck","Kidney","Leukemia","Liver","Lung","Lymphoma","Myeloid","Ovary","Pancreas","Pleura","Prostate","Sarcoma","Skin","Thyroid"}; 
+	String[] entities_all=new String[]{"Biliary","Bladder","Brain","Breast","Cervix","Colorectal","Endocrine","Endometrium","Esophagus","Gastric","HeadNeck","Kidney","Leukemia","Liver","Lung","Lymphoma","Myeloid","Ovary","Pancreas","Pleura","Prostate","Sarcoma","Skin","Thyroid"}; 
 	
 	static String[] chr={"1","2","3","4","5","6","7","8","9","10","11","12","13","14","15","16","17","18","19","20","21","22","X","Y"}; //chromosomes
 	static String[] chr2={"1","2","3","4","5","6","7","8","9","10","11","12","13","14","15","16","17","18","19","20","21","22","23","24"}; //chromosomes, alternative annotation
+	static int range_bins=100; //number of 100kb bins per task in the clustering stages (10Mb), fixed so that the results do not depend on the number of threads
 	static int[] chr_length={ //length of chromosomes in Hg19
 			249250621,
 			243199373,
@@ -168,21 +167,21 @@ public class CombinedStatistics_100 {
 		
 	
 
-	static ArrayList<Mutation>[][] mutations=new ArrayList[chr.length][]; //mutations of the cancer type examined after reading and exluding low-quality mutations 
+	MutationStore[] mutations=new MutationStore[chr.length]; //mutations of the cancer type examined after reading and exluding low-quality mutations 
 	
-	static double[][] alignability=new double[chr.length][]; //alignability of positions based on surrounding 36mer
-	static double[][] alignability_fine=new double[chr.length][]; //alignability of positions based on surrounding 36mer
-	static double[][] alignability_coarse=new double[chr.length][]; //alignability of positions based on surrounding 36mer
-	static ArrayList<Integer>[][] exclude=null;  //excluded subintervals based on CTCF 
+	double[][] alignability=new double[chr.length][]; //alignability of positions based on surrounding 36mer
+	double[][] alignability_fine=new double[chr.length][]; //alignability of positions based on surrounding 36mer
+	double[][] alignability_coarse=new double[chr.length][]; //alignability of positions based on surrounding 36mer
+	ArrayList<Integer>[][] exclude=null;  //excluded subintervals based on CTCF 
 	
 	
-	static ArrayList<int[]>[][] interval_align=new ArrayList[chr.length][]; //subintervals with sufficient alignability and not excluded (for simulation of positions in clustering-based metrics)
-	static double[][] coverage=null; //coverage
+	ArrayList<int[]>[][] interval_align=new ArrayList[chr.length][]; //subintervals with sufficient alignability and not excluded (for simulation of positions in clustering-based metrics)
+	double[][] coverage=null; //coverage
 		
 	//compute epigenome-based p-values. In addition to p-values the method returns the counts in each interval.
 	//The method compares the observed number of mutations in each interval with the expected number of mutations based on the underlying epigenomic data.
 	//It computes p-values for 1kb, 10kb and 100kb intervals and summarizes p-values of neighboring 1kb and 10kb intervals using Tippett's method. 
-	public static double[][][][] sign_epigenomic(double[][][] chromatin_1000, double[][][] chromatin_10000, double[][][] chromatin_100000, int[][] count_1000, int[][] count_10000, int[][] count_100000, double[][] coverage, boolean[][] coverage_valid, java.util.Random rng){//mutations,coverage
+	public double[][][][] sign_epigenomic(double[][][] chromatin_1000, double[][][] chromatin_10000, double[][][] chromatin_100000, int[][] count_1000, int[][] count_10000, int[][] count_100000, double[][] coverage, boolean[][] coverage_valid, java.util.Random rng) throws java.io.IOException {//mutations,coverage
 		double[][] p_1000=p_1000(chromatin_1000,count_1000,coverage);
 		double[][] p_10000=p_10000(chromatin_10000,count_10000,coverage);
 		double[][] p_100000=p_100000(chromatin_100000,count_100000,coverage_valid);
@@ -245,7 +244,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//epigenomics based p-values for 100kb intervals
-	public static SignCount sign_100000(double[][][] chromatin_100000, double[][] p_100000,  int[][] count_100000, double[][] alpha_gamma_100000, double[][] beta_gamma_100000,  double[][] coverage, boolean[][] coverage_valid, java.util.Random rng){//double[][]
+	public SignCount sign_100000(double[][][] chromatin_100000, double[][] p_100000,  int[][] count_100000, double[][] alpha_gamma_100000, double[][] beta_gamma_100000,  double[][] coverage, boolean[][] coverage_valid, java.util.Random rng) throws java.io.IOException {//double[][]
 		
 		double[][] alpha_100000=new double[chr.length][]; 
 		double[][] beta_100000=new double[chr.length][]; 
@@ -255,6 +254,8 @@ public class CombinedStatistics_100 {
 		}
 		
 		ArrayList<double[]> xx_100000=new ArrayList<double[]>();
+		long seed_p=rng.nextLong();
+		double[] cdfs=new double[2];
 		for (int i=0;i<chromatin_100000.length;i++){
 			for (int j=0;j<chromatin_100000[i].length;j++){
 				if(coverage_valid[i][j]){
@@ -289,13 +290,14 @@ public class CombinedStatistics_100 {
 						double p1=1;
 						double p2=1;
 						if(count_100000[i][j]>0){
-							p1=1-cum_gamma_poisson(count_100000[i][j]-1,alpha_gamma_100000[k_max][zz],beta_gamma_100000[k_max][zz]);
+							DiscreteTails.gammaPoissonCdfs(count_100000[i][j]-1,alpha_gamma_100000[k_max][zz],beta_gamma_100000[k_max][zz],cdfs);
+							p1=1-cdfs[0];
 							if(count_100000[i][j]>1){
-								p2=1-cum_gamma_poisson(count_100000[i][j]-2,alpha_gamma_100000[k_max][zz],beta_gamma_100000[k_max][zz]);
+								p2=1-cdfs[1];
 							}
 						}
 						
-						double p=(p2-p1)*rng.nextDouble()+p1;
+						double p=(p2-p1)*SeedTree.uniform(seed_p,i,j)+p1;
 						alpha_100000[i][j]=alpha_gamma_100000[k_max][zz];
 						beta_100000[i][j]=beta_gamma_100000[k_max][zz];
 						if(k_max==0&&z==0){
@@ -362,15 +364,22 @@ public class CombinedStatistics_100 {
 				threads[i].w=(double)(i)/100.0;
 				
 			}
-			execute(threads,30);
-			
 			double max=-Double.MAX_VALUE;
 			double w_max=-1;
-			for (int i=0;i<threads.length;i++){
-				//System.out.println(kk+"	"+threads[i].w+"	"+threads[i].sum2);
-				if(threads[i].sum2>max){
-					max=threads[i].sum2;
-					w_max=threads[i].w;
+			if(SignificanceNoncoding.fast_weights){
+				WeightSearch search=new WeightSearch();
+				threads[0].addBins(search);
+				w_max=search.maximize(threads.length-1);
+				max=search.max();
+			}
+			else{
+				ThreadPool.invokeAll(threads);
+				for (int i=0;i<threads.length;i++){
+					//System.out.println(kk+"	"+threads[i].w+"	"+threads[i].sum2);
+					if(threads[i].sum2>max){
+						max=threads[i].sum2;
+						w_max=threads[i].w;
+					}
 				}
 			}
 			ww_100000.add(w_max);
@@ -396,6 +405,7 @@ public class CombinedStatistics_100 {
 		
 		double[][][] c=new double[count_100000.length][][];
 		
+		long seed_sign=rng.nextLong();
 		for (int i=0;i<count_100000.length;i++){
 			c[i]=new double[count_100000[i].length][3];
 			for (int j=0;j<count_100000[i].length;j++){
@@ -422,13 +432,14 @@ public class CombinedStatistics_100 {
 						double p1=1;
 						double p2=1;
 						if(count_100000[i][j]>0){
-							p1=1-cum_gamma_poisson(count_100000[i][j]-1,alpha_100000[i][j]+sum1,beta_100000[i][j]+sum2);
+							DiscreteTails.gammaPoissonCdfs(count_100000[i][j]-1,alpha_100000[i][j]+sum1,beta_100000[i][j]+sum2,cdfs);
+							p1=1-cdfs[0];
 							if(count_100000[i][j]>1){
-								p2=1-cum_gamma_poisson(count_100000[i][j]-2,alpha_100000[i][j]+sum1,beta_100000[i][j]+sum2);
+								p2=1-cdfs[1];
 							}
 						}
 						
-						sign_100000[i][j]=(p2-p1)*rng.nextDouble()+p1;
+						sign_100000[i][j]=(p2-p1)*SeedTree.uniform(seed_sign,i,j)+p1;
 						if(Double.isNaN(sign_100000[i][j])){
 							sign_100000[i][j]=1;
 						}
@@ -446,7 +457,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//epigenomics based p-values for neighboring 10kb intervals, which are then summarized using Tippett's method
-	public static SignCount sign_10000_min(double[][][] chromatin_10000, double[][] p_10000,  int[][] count_10000, double[][] alpha_gamma_10000, double[][] beta_gamma_10000,  double[][] coverage, boolean[][] coverage_valid, java.util.Random rng){//double[][]
+	public SignCount sign_10000_min(double[][][] chromatin_10000, double[][] p_10000,  int[][] count_10000, double[][] alpha_gamma_10000, double[][] beta_gamma_10000,  double[][] coverage, boolean[][] coverage_valid, java.util.Random rng) throws java.io.IOException {//double[][]
 				
 		double[][] alpha_10000=new double[chr.length][]; 
 		double[][] beta_10000=new double[chr.length][]; 
@@ -456,6 +467,8 @@ public class CombinedStatistics_100 {
 		}
 		
 		ArrayList<double[]> xx_10000=new ArrayList<double[]>();
+		long seed_p=rng.nextLong();
+		double[] cdfs=new double[2];
 		for (int i=0;i<chromatin_10000.length;i++){
 			for (int j=0;j<chromatin_10000[i].length;j++){
 				if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<=high(chr[i])){
@@ -490,13 +503,14 @@ public class CombinedStatistics_100 {
 						double p1=1;
 						double p2=1;
 						if(count_10000[i][j]>0){
-							p1=1-cum_gamma_poisson(count_10000[i][j]-1,alpha_gamma_10000[k_max][zz],beta_gamma_10000[k_max][zz]);
+							DiscreteTails.gammaPoissonCdfs(count_10000[i][j]-1,alpha_gamma_10000[k_max][zz],beta_gamma_10000[k_max][zz],cdfs);
+							p1=1-cdfs[0];
 							if(count_10000[i][j]>1){
-								p2=1-cum_gamma_poisson(count_10000[i][j]-2,alpha_gamma_10000[k_max][zz],beta_gamma_10000[k_max][zz]);
+								p2=1-cdfs[1];
 							}
 						}
 						
-						double p=(p2-p1)*rng.nextDouble()+p1;
+						double p=(p2-p1)*SeedTree.uniform(seed_p,i,j)+p1;
 						alpha_10000[i][j]=alpha_gamma_10000[k_max][zz];
 						beta_10000[i][j]=beta_gamma_10000[k_max][zz];
 						if(k_max==0&&z==0){
@@ -563,15 +577,22 @@ public class CombinedStatistics_100 {
 				threads[i].w=(double)(i)/100.0;
 				
 			}
-			execute(threads,30);
-			
 			double max=-Double.MAX_VALUE;
 			double w_max=-1;
-			for (int i=0;i<threads.length;i++){
-				//System.out.println(kk+"	"+threads[i].w+"	"+threads[i].sum2);
-				if(threads[i].sum2>max){
-					max=threads[i].sum2;
-					w_max=threads[i].w;
+			if(SignificanceNoncoding.fast_weights){
+				WeightSearch search=new WeightSearch();
+				threads[0].addBins(search);
+				w_max=search.maximize(threads.length-1);
+				max=search.max();
+			}
+			else{
+				ThreadPool.invokeAll(threads);
+				for (int i=0;i<threads.length;i++){
+					//System.out.println(kk+"	"+threads[i].w+"	"+threads[i].sum2);
+					if(threads[i].sum2>max){
+						max=threads[i].sum2;
+						w_max=threads[i].w;
+					}
 				}
 			}
 			ww_10000.add(w_max);
@@ -596,6 +617,7 @@ public class CombinedStatistics_100 {
 		}
 		
 		double[][][] c=new double[count_10000.length][][];
+		long seed_sign=rng.nextLong();
 		for (int i=0;i<count_10000.length;i++){
 			c[i]=new double[count_10000[i].length][3];
 			for (int j=0;j<count_10000[i].length;j++){
@@ -622,13 +644,14 @@ public class CombinedStatistics_100 {
 						double p1=1;
 						double p2=1;
 						if(count_10000[i][j]>0){
-							p1=1-cum_gamma_poisson(count_10000[i][j]-1,alpha_10000[i][j]+sum1,beta_10000[i][j]+sum2);
+							DiscreteTails.gammaPoissonCdfs(count_10000[i][j]-1,alpha_10000[i][j]+sum1,beta_10000[i][j]+sum2,cdfs);
+							p1=1-cdfs[0];
 							if(count_10000[i][j]>1){
-								p2=1-cum_gamma_poisson(count_10000[i][j]-2,alpha_10000[i][j]+sum1,beta_10000[i][j]+sum2);
+								p2=1-cdfs[1];
 							}
 						}
 						
-						sign_10000[i][j]=(p2-p1)*rng.nextDouble()+p1;
+						sign_10000[i][j]=(p2-p1)*SeedTree.uniform(seed_sign,i,j)+p1;
 						if(Double.isNaN(sign_10000[i][j])){
 							sign_10000[i][j]=1;
 						}
@@ -703,7 +726,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//epigenomics based p-values for neighboring 1kb intervals, which are then summarized using Tippett's method
-	public static SignCount sign_1000_min(double[][][] chromatin_1000, double[][] p_1000,  int[][] count_1000, double[][] alpha_gamma_1000, double[][] beta_gamma_1000,  double[][] coverage, boolean[][] coverage_valid, java.util.Random rng){//double[][]
+	public SignCount sign_1000_min(double[][][] chromatin_1000, double[][] p_1000,  int[][] count_1000, double[][] alpha_gamma_1000, double[][] beta_gamma_1000,  double[][] coverage, boolean[][] coverage_valid, java.util.Random rng) throws java.io.IOException {//double[][]
 		double[][] alpha_1000=new double[chr.length][]; 
 		double[][] beta_1000=new double[chr.length][]; 
 		for (int i=0;i<chr.length;i++){
@@ -712,6 +735,8 @@ public class CombinedStatistics_100 {
 		}
 		
 		ArrayList<double[]> xx_1000=new ArrayList<double[]>();
+		long seed_p=rng.nextLong();
+		double[] cdfs=new double[2];
 		for (int i=0;i<chromatin_1000.length;i++){
 			for (int j=0;j<chromatin_1000[i].length;j++){
 				if(low(chr[i])<=coverage[i][j/10]&&coverage[i][j/10]<=high(chr[i])){
@@ -747,12 +772,13 @@ public class CombinedStatistics_100 {
 					double p1=1;
 					double p2=1;
 					if(count_1000[i][j]>0){
-						p1=1-cum_gamma_poisson(count_1000[i][j]-1,alpha_gamma_1000[k_max][zz],beta_gamma_1000[k_max][zz]);
+						DiscreteTails.gammaPoissonCdfs(count_1000[i][j]-1,alpha_gamma_1000[k_max][zz],beta_gamma_1000[k_max][zz],cdfs);
+						p1=1-cdfs[0];
 						if(count_1000[i][j]>1){
-							p2=1-cum_gamma_poisson(count_1000[i][j]-2,alpha_gamma_1000[k_max][zz],beta_gamma_1000[k_max][zz]);
+							p2=1-cdfs[1];
 						}
 					}
-					double p=(p2-p1)*rng.nextDouble()+p1;
+					double p=(p2-p1)*SeedTree.uniform(seed_p,i,j)+p1;
 					alpha_1000[i][j]=alpha_gamma_1000[k_max][zz];
 					beta_1000[i][j]=beta_gamma_1000[k_max][zz];
 					
@@ -821,14 +847,21 @@ public class CombinedStatistics_100 {
 				threads[i].w=(double)(i)/100.0;
 				
 			}
-			execute(threads,30);
-			
 			double max=-Double.MAX_VALUE;
 			double w_max=-1;
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].sum2>max){
-					max=threads[i].sum2;
-					w_max=threads[i].w;
+			if(SignificanceNoncoding.fast_weights){
+				WeightSearch search=new WeightSearch();
+				threads[0].addBins(search);
+				w_max=search.maximize(threads.length-1);
+				max=search.max();
+			}
+			else{
+				ThreadPool.invokeAll(threads);
+				for (int i=0;i<threads.length;i++){
+					if(threads[i].sum2>max){
+						max=threads[i].sum2;
+						w_max=threads[i].w;
+					}
 				}
 			}
 			ww_1000.add(w_max);
@@ -851,6 +884,7 @@ public class CombinedStatistics_100 {
 		}
 		
 		double[][][] c=new double[count_1000.length][][];
+		long seed_sign=rng.nextLong();
 		for (int i=0;i<count_1000.length;i++){
 			c[i]=new double[count_1000[i].length][3];
 			for (int j=0;j<count_1000[i].length;j++){
@@ -880,13 +914,14 @@ public class CombinedStatistics_100 {
 						double p1=1;
 						double p2=1;
 						if(count_1000[i][j]>0){
-							p1=1-cum_gamma_poisson(count_1000[i][j]-1,alpha_1000[i][j]+sum1,beta_1000[i][j]+sum2);
+							DiscreteTails.gammaPoissonCdfs(count_1000[i][j]-1,alpha_1000[i][j]+sum1,beta_1000[i][j]+sum2,cdfs);
+							p1=1-cdfs[0];
 							if(count_1000[i][j]>1){
-								p2= 1-cum_gamma_poisson(count_1000[i][j]-2,alpha_1000[i][j]+sum1,beta_1000[i][j]+sum2);
+								p2=1-cdfs[1];
 							}
 						}
 						
-						sign_1000[i][j]=(p2-p1)*rng.nextDouble()+p1;
+						sign_1000[i][j]=(p2-p1)*SeedTree.uniform(seed_sign,i,j)+p1;
 						if(Double.isNaN(sign_1000[i][j])){
 							sign_1000[i][j]=1;
 						}
@@ -959,165 +994,9 @@ public class CombinedStatistics_100 {
 		return new SignCount(p_min,c);
 	}
 	
-	//execute multiple threads in parallel
-	public static void execute(SubthreadMaxCountFactor[] threads, int no_cpu){
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-	}
-	
-	//execute multiple threads in parallel
-	public static void execute(Subthread_1000[] threads, int no_cpu){
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-	}
-	
-	//execute multiple threads in parallel
-	public static void execute(Subthread_10000[] threads, int no_cpu){
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-	}
-	
-	//execute multiple threads in parallel
-	public static void execute(Subthread_100000[] threads, int no_cpu){
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-	}
-	
 	//Thread to compute count-based p-values for 1kb intervals based on a Gamma-Poisson distribution 
 	//alpha/beta parameters of Gamma-Poisson are parsed as an argument for each interval
-	private static class Subthread_1000 extends Thread{
+	private static class Subthread_1000 extends TaskEx{
 		double[][] ssum=new double[chr.length][];
 		double[][] ssum2=new double[chr.length][];
 		double[][] coverage=new double[0][];
@@ -1129,43 +1008,63 @@ public class CombinedStatistics_100 {
 		double w=0;
 		
 		double sum2=0;
-		volatile int status=0;
 		
-		public void run(){
-			status=1;
+		public void runEx(){
+			double[] ab=new double[2];
 			for (int i=0;i<count.length;i++){
 				if(i!=0){
 					continue;		
 				}
 				for (int j=0;j<count[i].length;j++){
 					//System.out.println("AB	"+alpha[i][j]+"	"+beta[i][j]);
-					if(low(chr[i])<=coverage[i][j*1000/10000]&&coverage[i][j*1000/10000]<high(chr[i])&&!Double.isNaN(alpha[i][j])&&!Double.isNaN(beta[i][j])&&alpha[i][j]!=0&&beta[i][j]!=0){
-						double a=0;
-						double b=0;
-						for (int k=0;k<10;k++){
-							if(j-10*kk-k+9>=0&&(j+10*kk+k-9)*1000/10000<coverage[i].length&&low(chr[i])<=coverage[i][(j-10*kk-k+9)*1000/10000]&&coverage[i][(j-10*kk-k+9)*1000/10000]<high(chr[i])&&low(chr[i])<=coverage[i][(j+10*kk+k-9)*1000/10000]&&coverage[i][(j+10*kk+k-9)*1000/10000]<high(chr[i])){
-								a+=+w*count[i][j-10*kk-k+9]+w*count[i][j+10*kk+k-9];
-								b+=2*w;
-							}
-						}
-						if(!skip[i][j]){
-							double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[i][j]+a+ssum[i][j],beta[i][j]+b+ssum2[i][j]);
-							if(!Double.isNaN(pp)){
-								sum2+=pp;
-							}
-								
+					if(ring(i,j,w,ab)){
+						double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[i][j]+ab[0]+ssum[i][j],beta[i][j]+ab[1]+ssum2[i][j]);
+						if(!Double.isNaN(pp)){
+							sum2+=pp;
 						}
 					}
 				}
 			}
-			status=2;
+		}
+		
+		//collect the statistics of the bins, with the counts of the ring at weight 1
+		public void addBins(WeightSearch search){
+			double[] ab=new double[2];
+			for (int i=0;i<count.length;i++){
+				if(i!=0){
+					continue;		
+				}
+				for (int j=0;j<count[i].length;j++){
+					if(ring(i,j,1,ab)){
+						search.add((int)(count[i][j]),alpha[i][j]+ssum[i][j],beta[i][j]+ssum2[i][j],ab[0],ab[1]);
+					}
+				}
+			}
+		}
+		
+		//the counts of the ring of the bin j times weight into ab[0] and the weight of the ring into ab[1], false if the bin is not used
+		private boolean ring(int i,int j,double weight,double[] ab){
+			if(!(low(chr[i])<=coverage[i][j*1000/10000]&&coverage[i][j*1000/10000]<high(chr[i])&&!Double.isNaN(alpha[i][j])&&!Double.isNaN(beta[i][j])&&alpha[i][j]!=0&&beta[i][j]!=0)||skip[i][j]){
+				return false;
+			}
+			double a=0;
+			double b=0;
+			for (int k=0;k<10;k++){
+				if(j-10*kk-k+9>=0&&(j+10*kk+k-9)*1000/10000<coverage[i].length&&low(chr[i])<=coverage[i][(j-10*kk-k+9)*1000/10000]&&coverage[i][(j-10*kk-k+9)*1000/10000]<high(chr[i])&&low(chr[i])<=coverage[i][(j+10*kk+k-9)*1000/10000]&&coverage[i][(j+10*kk+k-9)*1000/10000]<high(chr[i])){
+					a+=+weight*count[i][j-10*kk-k+9]+weight*count[i][j+10*kk+k-9];
+					b+=2*weight;
+				}
+			}
+			ab[0]=a;
+			ab[1]=b;
+			return true;
 		}
 		
 	}
 	
 	//Thread to compute count-based p-values for 10kb intervals based on a Gamma-Poisson distribution 
 	//alpha/beta parameters of Gamma-Poisson are parsed as an argument for each interval
-	private static class Subthread_10000 extends Thread{
+	private static class Subthread_10000 extends TaskEx{
 		double[][] ssum=new double[chr.length][];
 		double[][] ssum2=new double[chr.length][];
 		double[][] coverage=new double[0][];
@@ -1177,42 +1076,61 @@ public class CombinedStatistics_100 {
 		double w=0;
 		
 		double sum2=0;
-		volatile int status=0;
 		
-		public void run(){
-			status=1;
+		public void runEx(){
+			double[] ab=new double[2];
 			for (int i=0;i<count.length;i++){
 				if(i!=0){
 					continue;		
 				}
 				for (int j=0;j<count[i].length;j++){
 					//System.out.println("AB	"+alpha[i][j]+"	"+beta[i][j]);
-					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])&&!Double.isNaN(alpha[i][j])&&!Double.isNaN(beta[i][j])&&alpha[i][j]!=0&&beta[i][j]!=0){
-						double a=0;
-						double b=0;
-						if(j-kk>=0&&(j+kk)<coverage[i].length&&low(chr[i])<=coverage[i][(j-kk)]&&coverage[i][(j-kk)]<high(chr[i])&&low(chr[i])<=coverage[i][(j+kk)]&&coverage[i][(j+kk)]<high(chr[i])){
-							a+=+w*count[i][j-kk]+w*count[i][j+kk];
-							b+=2*w;
-						}
-							
-						if(!skip[i][j]){
-							double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[i][j]+a+ssum[i][j],beta[i][j]+b+ssum2[i][j]);
-							if(!Double.isNaN(pp)){
-								sum2+=pp;
-							}
-								
+					if(ring(i,j,w,ab)){
+						double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[i][j]+ab[0]+ssum[i][j],beta[i][j]+ab[1]+ssum2[i][j]);
+						if(!Double.isNaN(pp)){
+							sum2+=pp;
 						}
 					}
 				}
 			}
-			status=2;
+		}
+		
+		//collect the statistics of the bins, with the counts of the ring at weight 1
+		public void addBins(WeightSearch search){
+			double[] ab=new double[2];
+			for (int i=0;i<count.length;i++){
+				if(i!=0){
+					continue;		
+				}
+				for (int j=0;j<count[i].length;j++){
+					if(ring(i,j,1,ab)){
+						search.add((int)(count[i][j]),alpha[i][j]+ssum[i][j],beta[i][j]+ssum2[i][j],ab[0],ab[1]);
+					}
+				}
+			}
+		}
+		
+		//the counts of the ring of the bin j times weight into ab[0] and the weight of the ring into ab[1], false if the bin is not used
+		private boolean ring(int i,int j,double weight,double[] ab){
+			if(!(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])&&!Double.isNaN(alpha[i][j])&&!Double.isNaN(beta[i][j])&&alpha[i][j]!=0&&beta[i][j]!=0)||skip[i][j]){
+				return false;
+			}
+			double a=0;
+			double b=0;
+			if(j-kk>=0&&(j+kk)<coverage[i].length&&low(chr[i])<=coverage[i][(j-kk)]&&coverage[i][(j-kk)]<high(chr[i])&&low(chr[i])<=coverage[i][(j+kk)]&&coverage[i][(j+kk)]<high(chr[i])){
+				a+=+weight*count[i][j-kk]+weight*count[i][j+kk];
+				b+=2*weight;
+			}
+			ab[0]=a;
+			ab[1]=b;
+			return true;
 		}
 		
 	}
 	
 	//Thread to compute count-based p-values for 100kb intervals based on a Gamma-Poisson distribution 
 	//alpha/beta parameters of Gamma-Poisson are parsed as an argument for each interval
-	private static class Subthread_100000 extends Thread{
+	private static class Subthread_100000 extends TaskEx{
 		double[][] ssum=new double[chr.length][];
 		double[][] ssum2=new double[chr.length][];
 		boolean[][] coverage_valid=new boolean[0][];
@@ -1224,41 +1142,60 @@ public class CombinedStatistics_100 {
 		double w=0;
 		
 		double sum2=0;
-		volatile int status=0;
 		
-		public void run(){
-			status=1;
+		public void runEx(){
+			double[] ab=new double[2];
 			for (int i=0;i<count.length;i++){
 				if(i!=0){
 					continue;		
 				}
 				for (int j=0;j<count[i].length;j++){
 					//System.out.println("AB	"+alpha[i][j]+"	"+beta[i][j]);
-					if(coverage_valid[i][j]&&!Double.isNaN(alpha[i][j])&&!Double.isNaN(beta[i][j])&&alpha[i][j]!=0&&beta[i][j]!=0){
-						double a=0;
-						double b=0;
-						if(j-kk>=0&&(j+kk)<coverage_valid[i].length&&coverage_valid[i][(j-kk)]&&coverage_valid[i][(j+kk)]){
-							a+=+w*count[i][j-kk]+w*count[i][j+kk];
-							b+=2*w;
-						}
-							
-						if(!skip[i][j]){
-							double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[i][j]+a+ssum[i][j],beta[i][j]+b+ssum2[i][j]);
-							if(!Double.isNaN(pp)){
-								sum2+=pp;
-							}
-								
+					if(ring(i,j,w,ab)){
+						double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[i][j]+ab[0]+ssum[i][j],beta[i][j]+ab[1]+ssum2[i][j]);
+						if(!Double.isNaN(pp)){
+							sum2+=pp;
 						}
 					}
 				}
 			}
-			status=2;
+		}
+		
+		//collect the statistics of the bins, with the counts of the ring at weight 1
+		public void addBins(WeightSearch search){
+			double[] ab=new double[2];
+			for (int i=0;i<count.length;i++){
+				if(i!=0){
+					continue;		
+				}
+				for (int j=0;j<count[i].length;j++){
+					if(ring(i,j,1,ab)){
+						search.add((int)(count[i][j]),alpha[i][j]+ssum[i][j],beta[i][j]+ssum2[i][j],ab[0],ab[1]);
+					}
+				}
+			}
+		}
+		
+		//the counts of the ring of the bin j times weight into ab[0] and the weight of the ring into ab[1], false if the bin is not used
+		private boolean ring(int i,int j,double weight,double[] ab){
+			if(!(coverage_valid[i][j]&&!Double.isNaN(alpha[i][j])&&!Double.isNaN(beta[i][j])&&alpha[i][j]!=0&&beta[i][j]!=0)||skip[i][j]){
+				return false;
+			}
+			double a=0;
+			double b=0;
+			if(j-kk>=0&&(j+kk)<coverage_valid[i].length&&coverage_valid[i][(j-kk)]&&coverage_valid[i][(j+kk)]){
+				a+=+weight*count[i][j-kk]+weight*count[i][j+kk];
+				b+=2*weight;
+			}
+			ab[0]=a;
+			ab[1]=b;
+			return true;
 		}
 		
 	}
 	
 	//Compute alpha beta parameters of a Gamma poisson distribution for each 1kb interval based on its underlying epigenomics data
-	public static double[][][] alpha_beta_1000(double[][][] chromatin_1000, int[][] count_1000, double[][] p_1000, double[][] coverage){
+	public static double[][][] alpha_beta_1000(double[][][] chromatin_1000, int[][] count_1000, double[][] p_1000, double[][] coverage) throws java.io.IOException {
 		
 		int[][][] histo_1000=new int[4][10][500];
 		for (int i=0;i<chromatin_1000.length;i++){
@@ -1332,7 +1269,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//Compute alpha beta parameters of a Gamma poisson distribution for each 10kb interval based on its underlying epigenomics data
-	public static double[][][] alpha_beta_10000(double[][][] chromatin_10000, int[][] count_10000, double[][] p_10000, double[][] coverage){
+	public static double[][][] alpha_beta_10000(double[][][] chromatin_10000, int[][] count_10000, double[][] p_10000, double[][] coverage) throws java.io.IOException {
 		int[][][] histo_10000=new int[4][10][500];
 		for (int i=0;i<chromatin_10000.length;i++){
 			for (int j=0;j<chromatin_10000[i].length;j++){
@@ -1404,7 +1341,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//Compute alpha beta parameters of a Gamma poisson distribution for each 100kb interval based on its underlying epigenomics data
-	public static double[][][] alpha_beta_100000(double[][][] chromatin_100000, int[][] count_100000, double[][] p_100000, boolean[][] coverage_valid){
+	public static double[][][] alpha_beta_100000(double[][][] chromatin_100000, int[][] count_100000, double[][] p_100000, boolean[][] coverage_valid) throws java.io.IOException {
 		int[][][] histo_100000=new int[4][10][5000];
 		for (int i=0;i<chromatin_100000.length;i++){
 			for (int j=0;j<chromatin_100000[i].length;j++){
@@ -1646,17 +1583,17 @@ public class CombinedStatistics_100 {
 	}
 	
 	//count number of mutations for 1kb intervals
-	public static int[][] count_1000(ArrayList<Mutation>[][] mutations){
+	public int[][] count_1000(MutationStore[] mutations){
 		int[][] count_1000=new int[chr.length][];
 		for (int i=0;i<mutations.length;i++){
 			count_1000[i]=new int[1+(chr_length[i]-shift_mut)/1000];
 		}
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=0;k<mutations[i][j].size();k++){
-					if(mutations[i][j].get(k).group==0){//||mutations[i][j].get(k).group==1
-						if(mutations[i][j].get(k).pos>=shift_mut){
-							count_1000[i][(mutations[i][j].get(k).pos-shift_mut)/1000]++;
+			for (int j=0;j<mutations[i].bins();j++){
+				for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+					if(mutations[i].group(k)==0){//||mutations[i].group(k)==1
+						if(mutations[i].pos(k)>=shift_mut){
+							count_1000[i][(mutations[i].pos(k)-shift_mut)/1000]++;
 						}
 						
 					}
@@ -1669,22 +1606,22 @@ public class CombinedStatistics_100 {
 	}
 	
 	//count number of indels for 1kb intervals
-	public static int[][] count_1000_indel(ArrayList<Mutation>[][] mutations){
+	public int[][] count_1000_indel(MutationStore[] mutations){
 		
 		int[][] count_1000=new int[chr.length][];
 		for (int i=0;i<mutations.length;i++){
 			count_1000[i]=new int[1+(chr_length[i]-shift_mut)/1000];
 		}
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=0;k<mutations[i][j].size();k++){
-					if(mutations[i][j].get(k).group==0){//||mutations[i][j].get(k).group==1
-						if(mutations[i][j].get(k).ref.length()==1&&mutations[i][j].get(k).alt.length()==1){
+			for (int j=0;j<mutations[i].bins();j++){
+				for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+					if(mutations[i].group(k)==0){//||mutations[i].group(k)==1
+						if(mutations[i].refLength(k)==1&&mutations[i].altLength(k)==1){
 						
 						}
 						else{
-							if(mutations[i][j].get(k).pos>=shift_mut){
-								count_1000[i][(mutations[i][j].get(k).pos-shift_mut)/1000]++;
+							if(mutations[i].pos(k)>=shift_mut){
+								count_1000[i][(mutations[i].pos(k)-shift_mut)/1000]++;
 								
 							}
 							
@@ -1699,17 +1636,17 @@ public class CombinedStatistics_100 {
 	}
 
 	//count number of mutations for 10kb intervals
-	public static int[][] count_10000(ArrayList<Mutation>[][] mutations){
+	public int[][] count_10000(MutationStore[] mutations){
 		int[][] count_10000=new int[chr.length][];
 		for (int i=0;i<mutations.length;i++){
 			count_10000[i]=new int[1+(chr_length[i]-shift_mut)/10000];
 		}
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=0;k<mutations[i][j].size();k++){
-					if(mutations[i][j].get(k).group==0){//||mutations[i][j].get(k).group==1
-						if(mutations[i][j].get(k).pos>=shift_mut){
-							count_10000[i][(mutations[i][j].get(k).pos-shift_mut)/10000]++;
+			for (int j=0;j<mutations[i].bins();j++){
+				for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+					if(mutations[i].group(k)==0){//||mutations[i].group(k)==1
+						if(mutations[i].pos(k)>=shift_mut){
+							count_10000[i][(mutations[i].pos(k)-shift_mut)/10000]++;
 						}
 						
 					}
@@ -1722,21 +1659,21 @@ public class CombinedStatistics_100 {
 	}
 	
 	//count number of indels for 10kb intervals
-	public static int[][] count_10000_indel(ArrayList<Mutation>[][] mutations){
+	public int[][] count_10000_indel(MutationStore[] mutations){
 		int[][] count_10000=new int[chr.length][];
 		for (int i=0;i<mutations.length;i++){
 			count_10000[i]=new int[1+(chr_length[i]-shift_mut)/10000];
 		}
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=0;k<mutations[i][j].size();k++){
-					if(mutations[i][j].get(k).group==0){//||mutations[i][j].get(k).group==1
-						if(mutations[i][j].get(k).ref.length()==1&&mutations[i][j].get(k).alt.length()==1){
+			for (int j=0;j<mutations[i].bins();j++){
+				for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+					if(mutations[i].group(k)==0){//||mutations[i].group(k)==1
+						if(mutations[i].refLength(k)==1&&mutations[i].altLength(k)==1){
 							
 						}
 						else{
-							if(mutations[i][j].get(k).pos>=shift_mut){
-								count_10000[i][(mutations[i][j].get(k).pos-shift_mut)/10000]++;
+							if(mutations[i].pos(k)>=shift_mut){
+								count_10000[i][(mutations[i].pos(k)-shift_mut)/10000]++;
 							}
 							
 						}
@@ -1751,21 +1688,21 @@ public class CombinedStatistics_100 {
 	}
 	
 	//count number of indels for 100kb intervals
-	public static int[][] count_100000_indel(ArrayList<Mutation>[][] mutations){
+	public int[][] count_100000_indel(MutationStore[] mutations){
 		int[][] count_100000=new int[chr.length][];
 		for (int i=0;i<mutations.length;i++){
 			count_100000[i]=new int[1+(chr_length[i]-shift_mut)/100000];
 		}
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=0;k<mutations[i][j].size();k++){
-					if(mutations[i][j].get(k).group==0){//||mutations[i][j].get(k).group==1
-						if(mutations[i][j].get(k).ref.length()==1&&mutations[i][j].get(k).alt.length()==1){
+			for (int j=0;j<mutations[i].bins();j++){
+				for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+					if(mutations[i].group(k)==0){//||mutations[i].group(k)==1
+						if(mutations[i].refLength(k)==1&&mutations[i].altLength(k)==1){
 						
 						}
 						else{
-							if(mutations[i][j].get(k).pos>=shift_mut){
-								count_100000[i][(mutations[i][j].get(k).pos-shift_mut)/100000]++;
+							if(mutations[i].pos(k)>=shift_mut){
+								count_100000[i][(mutations[i].pos(k)-shift_mut)/100000]++;
 							}
 							
 						}
@@ -1779,17 +1716,17 @@ public class CombinedStatistics_100 {
 	}
 	
 	//count number of mutations for 100kb intervals
-	public static int[][] count_100000(ArrayList<Mutation>[][] mutations){
+	public int[][] count_100000(MutationStore[] mutations){
 		int[][] count_100000=new int[chr.length][];
 		for (int i=0;i<mutations.length;i++){
 			count_100000[i]=new int[1+(chr_length[i]-shift_mut)/100000];
 		}
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=0;k<mutations[i][j].size();k++){
-					if(mutations[i][j].get(k).group==0){//||mutations[i][j].get(k).group==1
-						if(mutations[i][j].get(k).pos>=shift_mut){
-							count_100000[i][(mutations[i][j].get(k).pos-shift_mut)/100000]++;
+			for (int j=0;j<mutations[i].bins();j++){
+				for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+					if(mutations[i].group(k)==0){//||mutations[i].group(k)==1
+						if(mutations[i].pos(k)>=shift_mut){
+							count_100000[i][(mutations[i].pos(k)-shift_mut)/100000]++;
 						}
 						
 						
@@ -1803,7 +1740,11 @@ public class CombinedStatistics_100 {
 	}
 	
 	//read ChIP-seq data for 1kb intervals
-	public static double[][][] read_chromatin_1000() throws java.io.IOException {
+	public double[][][] read_chromatin_1000() throws java.io.IOException {
+		return AnnotationCache.get("chromatin:"+file_epi_signal_1000+":"+shift_mut, ()->load_chromatin_1000());
+	}
+	
+	private double[][][] load_chromatin_1000() throws java.io.IOException {
 		double[][][] chromatin_1000=new double[chr.length][][];
 		{
 			for (int chr_index=0;chr_index<chr.length;chr_index++){
@@ -1837,7 +1778,11 @@ public class CombinedStatistics_100 {
 	}
 	
 	//read ChIP-seq data for 10kb intervals
-	public static double[][][] read_chromatin_10000() throws java.io.IOException {
+	public double[][][] read_chromatin_10000() throws java.io.IOException {
+		return AnnotationCache.get("chromatin:"+file_epi_signal_10000+":"+shift_mut, ()->load_chromatin_10000());
+	}
+	
+	private double[][][] load_chromatin_10000() throws java.io.IOException {
 		double[][][] chromatin_10000=new double[chr.length][][];
 		{
 			for (int chr_index=0;chr_index<chr.length;chr_index++){
@@ -1868,7 +1813,11 @@ public class CombinedStatistics_100 {
 	}
 	
 	//read ChIP-seq data for 100kb intervals
-	public static double[][][] read_chromatin_100000() throws java.io.IOException {
+	public double[][][] read_chromatin_100000() throws java.io.IOException {
+		return AnnotationCache.get("chromatin:"+file_epi_signal_100000+":"+shift_mut, ()->load_chromatin_100000());
+	}
+	
+	private double[][][] load_chromatin_100000() throws java.io.IOException {
 		double[][][] chromatin_100000=new double[chr.length][][];
 		{
 			for (int chr_index=0;chr_index<chr.length;chr_index++){
@@ -1899,22 +1848,16 @@ public class CombinedStatistics_100 {
 	}
 	
 	//pool mutations for 100kb intervals
-	public static ArrayList<Mutation>[][] summary_100(ArrayList<Mutation>[][] x){
-		ArrayList<Mutation>[][] y=new ArrayList[chr.length][];
+	public MutationStore[] summary_100(MutationStore[] x){
+		MutationStore[] y=new MutationStore[chr.length];
 		for (int i=0;i<x.length;i++){
-			y[i]=new ArrayList[1+(chr_length[i]-shift_mut)/100000];
-			for (int j=0;j<y[i].length;j++){
-				y[i][j]=new ArrayList<Mutation>();
-			}
-			for (int j=0;j<x[i].length;j++){
-				y[i][j/10].addAll(x[i][j]);
-			}
+			y[i]=x[i].merge(10,1+(chr_length[i]-shift_mut)/100000);
 		}
 		return y;
 	}
 	
 	//pool intervals for 100kb intervals
-	public static ArrayList<int[]>[][] summary_interval_100(ArrayList<int[]>[][] x){
+	public ArrayList<int[]>[][] summary_interval_100(ArrayList<int[]>[][] x){
 		ArrayList<int[]>[][] y=new ArrayList[chr.length][];
 		for (int i=0;i<x.length;i++){
 			y[i]=new ArrayList[1+(chr_length[i]-shift_mut)/100000];
@@ -1929,7 +1872,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//pool counts for 100kb intervals
-	public static int[][] summary_100(int[][] x){
+	public int[][] summary_100(int[][] x){
 		int[][] y=new int[chr.length][];
 		for (int i=0;i<x.length;i++){
 			y[i]=new int[1+(chr_length[i]-shift_mut)/100000];
@@ -1941,7 +1884,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//pool counts for 100kb intervals
-	public static int[][][] summary_100(int[][][] x){
+	public int[][][] summary_100(int[][][] x){
 		int[][][] y=new int[chr.length][][];
 		for (int i=0;i<x.length;i++){
 			y[i]=new int[1+(chr_length[i]-shift_mut)/100000][x[0][0].length];
@@ -1955,7 +1898,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//intitiate paths and global variables based on the parameters parsed to the script from outside 
-	public static void initiate(String entity_selX, int shift_mutX, String folder_auxiliaryX, String folder_significanceX,String folder_annotationX,String folder_counts_allX, String[] all_entitiesX, String[][] files_donorsX, String[][][] files_mut_snvX, String[][][] files_mut_indelX){
+	public void initiate(String entity_selX, int shift_mutX, String folder_auxiliaryX, String folder_significanceX,String folder_annotationX,String folder_counts_allX, String[] all_entitiesX, String[][] files_donorsX, String[][][] files_mut_snvX, String[][][] files_mut_indelX){
 		
 		shift_mut=shift_mutX;
 		entity_sel=entity_selX;
@@ -2022,7 +1965,7 @@ public class CombinedStatistics_100 {
 		file_n_indel_quality2=folder_counts_all+"n_indel_quality2_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix;
 		file_n_quality2=folder_counts_all+"n_quality2_"+shift_mut+".txt"+SignificanceNoncoding.out_suffix; 
 		
-		mutations=new ArrayList[chr.length][];
+		mutations=new MutationStore[chr.length];
 		
 		alignability=new double[chr.length][];
 		alignability_fine=new double[chr.length][];
@@ -2093,7 +2036,7 @@ public class CombinedStatistics_100 {
 		mask_counts(p_mask, count, mask_index(what), dim);
 	}
 
-	private static double[][][] read_count_dump(String file, int dim, int vars) throws java.io.IOException {
+	private double[][][] read_count_dump(String file, int dim, int vars) throws java.io.IOException {
 		FileInputStream in = new FileInputStream(file);
 		BufferedReader input = new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
 
@@ -2118,7 +2061,12 @@ public class CombinedStatistics_100 {
 	}
 
 	// just set up the paths and preprocess data, so we can run each entity independently afterwards
+	// NB. each call gets a context of its own, so that several shifts can run concurrently
 	public static void execute_read_mutations_all_entities(int shift_mut, String folder_auxiliary, String folder_significance,String folder_annotation,String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel) throws java.io.IOException {
+		new CombinedStatistics_100().run_read_mutations_all_entities(shift_mut, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all, all_entities, files_donors, files_mut_snv, files_mut_indel);
+	}
+	
+	public void run_read_mutations_all_entities(int shift_mut, String folder_auxiliary, String folder_significance,String folder_annotation,String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel) throws java.io.IOException {
 
 		initiate( null,  shift_mut,  folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities,files_donors, files_mut_snv, files_mut_indel);
 
@@ -2132,7 +2080,12 @@ public class CombinedStatistics_100 {
 	//paths and global parameters based on outside parameters. it then reads mutations and annotation data
 	//and calls the functions to compute the different p-values for each 100kb interval described in the methods
 	//finally, it writes these p-values to a combined significance file
+	// NB. each call gets a context of its own, so that several shifts can run concurrently
 	public static void execute(String entity_sel, int shift_mut, String folder_auxiliary, String folder_significance,String folder_annotation,String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel, java.util.Random rng) throws java.io.IOException {
+		new CombinedStatistics_100().run(entity_sel, shift_mut, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all, all_entities, files_donors, files_mut_snv, files_mut_indel, rng);
+	}
+	
+	public void run(String entity_sel, int shift_mut, String folder_auxiliary, String folder_significance,String folder_annotation,String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel, java.util.Random rng) throws java.io.IOException {
 		boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
 		if(isWindows){
 			separator="\\";
@@ -2158,7 +2111,7 @@ public class CombinedStatistics_100 {
 			new File(folder_counts_all).mkdir();
 		}
 		
-		mutations=new ArrayList[chr.length][];
+		mutations=new MutationStore[chr.length];
 
 		interval_align=new ArrayList[chr.length][];
 	
@@ -2215,34 +2168,27 @@ public class CombinedStatistics_100 {
 			int[][] splice_total=new int[chr.length][];
 			
 			if(!new File(file_splice_count).exists()){
-				SubthreadSplice[] threads=new SubthreadSplice[chr.length];
-				for (int i=0;i<threads.length;i++){
-					threads[i]=new SubthreadSplice();
-					threads[i].i=i;
-					threads[i].coverage=coverage;
-					threads[i].mutations=mutations;
-					threads[i].start();
+				int[] chunks=new int[chr.length];
+				for (int i=0;i<chr.length;i++){
+					splice[i]=new int[1+(chr_length[i]-shift_mut)/10000][2];
+					splice_total[i]=new int[1+(chr_length[i]-shift_mut)/10000];
+					chunks[i]=chr_length[i]/1000000;
 				}
-				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads.length;i++){
-						if(threads[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
+				//NB. 10 chunks of 1Mb per task, as for the clustering
+				BinRanges ranges=new BinRanges(chunks,10);
+				SubthreadSplice[] threads=new SubthreadSplice[ranges.size()];
+				for (int k=0;k<threads.length;k++){
+					threads[k]=new SubthreadSplice();
+					threads[k].i=ranges.chr(k);
+					threads[k].j_start=ranges.start(k);
+					threads[k].j_end=ranges.end(k);
+					threads[k].coverage=coverage;
+					threads[k].mutations=mutations;
+					threads[k].splice=splice[ranges.chr(k)];
+					threads[k].splice_total=splice_total[ranges.chr(k)];
 				}
 				
-				for (int i=0;i<splice.length;i++){
-					splice[i]=threads[i].splice;
-					splice_total[i]=threads[i].splice_total;
-				}
+				ThreadPool.invokeAll(threads);
 				
 				java.io.FileOutputStream out=new java.io.FileOutputStream(file_splice_count);
 				BufferedWriter output= new BufferedWriter(new java.io.OutputStreamWriter(ZipFilter.filterOutputStream(out, file_splice_count)));
@@ -2291,6 +2237,7 @@ public class CombinedStatistics_100 {
 			}
 			
 			ArrayList<double[]> splice_raw=new ArrayList<double[]>();
+			double[] splice_tails=new double[2];
 			for (int i=0;i<splice.length;i++){
 				for (int j=0;j<splice[i].length;j++){
 					
@@ -2298,10 +2245,9 @@ public class CombinedStatistics_100 {
 						double aX=1;
 						double bX=1;
 						if(splice[i][j][1]>0){
-							aX=Math.max(0,1-new BinomialDistribution(splice_total[i][j],n1/n2).cumulativeProbability(splice[i][j][1]-1));//Math.pow(10, -10)
-							if(splice[i][j][1]>1){
-								bX=Math.max(0,1-new BinomialDistribution(splice_total[i][j],n1/n2).cumulativeProbability(splice[i][j][1]-2));//Math.pow(10, -10)
-							}
+							DiscreteTails.binomialUpperTails(splice[i][j][1],splice_total[i][j],n1/n2,splice_tails);
+							aX=splice_tails[0];
+							bX=splice_tails[1];
 							splice_raw.add(new double[]{splice[i][j][1],splice_total[i][j],i,j,aX,bX});
 							
 							//new double[]{aX,bX,i,j}
@@ -2339,27 +2285,21 @@ public class CombinedStatistics_100 {
 			
 			
 			ArrayList<int[]> counts_all=new ArrayList<int[]>();
+			PositionCounter counter=new PositionCounter();
 			for (int i=0;i<mutations.length;i++){
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=0;j<mutations[i].bins();j++){
 					if(coverage_valid[i][j]){
-						Hashtable<Integer,Integer> table=new Hashtable<Integer,Integer>();
-						ArrayList<int[]> counts=new ArrayList<int[]>();
-						for (int k=0;k<mutations[i][j].size();k++){
-							if(mutations[i][j].get(k).group==0){
-								Integer ii=table.get(mutations[i][j].get(k).pos);
-								if(ii==null){
-									ii=counts.size();
-									table.put(mutations[i][j].get(k).pos,counts.size());
-									counts.add(new int[]{i,mutations[i][j].get(k).pos,0});
-								}
-								counts.get(ii)[2]++;
+						counter.clear();
+						for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+							if(mutations[i].group(k)==0){
+								counter.add(mutations[i].pos(k));
 							}
-							
 						}
+						counter.count();
 						
-						for (int k=0;k<counts.size();k++){
-							if(counts.get(k)[2]>=5){
-								counts_all.add(counts.get(k));
+						for (int k=0;k<counter.runs();k++){
+							if(counter.multiplicity(k)>=5){
+								counts_all.add(new int[]{i,counter.position(k),counter.multiplicity(k)});
 							}
 						}
 					}
@@ -2385,34 +2325,24 @@ public class CombinedStatistics_100 {
 			
 			double[] factor_clumps=new double[10000];
 			{
-				long seeds[] = SignificanceNoncoding.Random_nextLongs(rng, chr.length);
+				long seed = rng.nextLong();
 			if(!new File(file_factor_clumps).exists()){
 				
-				SubthreadClumpsDistance[] threads_dist=new SubthreadClumpsDistance[chr.length];
-				for (int i=0;i<threads_dist.length;i++){
-					threads_dist[i]=new SubthreadClumpsDistance();
-					threads_dist[i].i=i;
-					threads_dist[i].coverage_valid=coverage_valid;
-					threads_dist[i].table_skip=table_skip[i];
-					threads_dist[i].mutations=mutations;
-					threads_dist[i].seed=seeds[i];
-					threads_dist[i].start();
+				BinRanges ranges=new BinRanges(mutations,range_bins);
+				SubthreadClumpsDistance[] threads_dist=new SubthreadClumpsDistance[ranges.size()];
+				for (int k=0;k<threads_dist.length;k++){
+					int i=ranges.chr(k);
+					threads_dist[k]=new SubthreadClumpsDistance();
+					threads_dist[k].i=i;
+					threads_dist[k].j_start=ranges.start(k);
+					threads_dist[k].j_end=ranges.end(k);
+					threads_dist[k].coverage_valid=coverage_valid;
+					threads_dist[k].table_skip=table_skip[i];
+					threads_dist[k].mutations=mutations;
+					threads_dist[k].seed=seed;
 				}
 				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_dist.length;i++){
-						if(threads_dist[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
-				}
+				ThreadPool.invokeAll(threads_dist);
 				
 				int[] expected_combi=new int[10000];
 				int[] observed_combi=new int[10000];
@@ -2471,38 +2401,29 @@ public class CombinedStatistics_100 {
 			double[][] avg_clumps_combi=new double[chr.length][];
 			
 			{
-				long seeds[] = SignificanceNoncoding.Random_nextLongs(rng, chr.length);
+				long seed = rng.nextLong();
 			if(!new File(file_clumps_count_combi).exists()){
-				SubthreadClumpsCombi[] threads_combi=new SubthreadClumpsCombi[chr.length];
-				for (int i=0;i<threads_combi.length;i++){
-					threads_combi[i]=new SubthreadClumpsCombi();
-					threads_combi[i].i=i;
-					threads_combi[i].coverage_valid=coverage_valid;
-					threads_combi[i].mutations=mutations;
-					threads_combi[i].factor_clumps=factor_clumps;
-					threads_combi[i].seed=seeds[i];
-					threads_combi[i].start();
+				for (int i=0;i<chr.length;i++){
+					avg_clumps_combi[i]=new double[1+(chr_length[i]-shift_mut)/100000];
+					clumps_combi[i]=new double[1+(chr_length[i]-shift_mut)/100000];
 				}
-				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_combi.length;i++){
-						if(threads_combi[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
+				BinRanges ranges=new BinRanges(mutations,range_bins);
+				SubthreadClumpsCombi[] threads_combi=new SubthreadClumpsCombi[ranges.size()];
+				for (int k=0;k<threads_combi.length;k++){
+					int i=ranges.chr(k);
+					threads_combi[k]=new SubthreadClumpsCombi();
+					threads_combi[k].i=i;
+					threads_combi[k].j_start=ranges.start(k);
+					threads_combi[k].j_end=ranges.end(k);
+					threads_combi[k].coverage_valid=coverage_valid;
+					threads_combi[k].mutations=mutations;
+					threads_combi[k].factor_clumps=factor_clumps;
+					threads_combi[k].seed=seed;
+					threads_combi[k].avg_clumps=avg_clumps_combi[i];
+					threads_combi[k].clumps=clumps_combi[i];
 				}
 				
-				for (int i=0;i<threads_combi.length;i++){
-					avg_clumps_combi[i]=threads_combi[i].avg_clumps;
-					clumps_combi[i]=threads_combi[i].clumps;
-				}
+				ThreadPool.invokeAll(threads_combi);
 				
 				
 				java.io.FileOutputStream out=new java.io.FileOutputStream(file_clumps_count_combi);
@@ -2584,17 +2505,17 @@ public class CombinedStatistics_100 {
 			
 			ArrayList<int[]> counts_all_indel=new ArrayList<int[]>();
 			for (int i=0;i<mutations.length;i++){
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=0;j<mutations[i].bins();j++){
 					if(coverage_valid[i][j]){
 						Hashtable<Integer,Integer> table_indel=new Hashtable<Integer,Integer>();
 						ArrayList<int[]> counts_indel=new ArrayList<int[]>();
-						for (int k=0;k<mutations[i][j].size();k++){ 
-							if(mutations[i][j].get(k).ref.length()!=1||mutations[i][j].get(k).alt.length()!=1){
-								Integer ii=table_indel.get(mutations[i][j].get(k).pos);
+						for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){ 
+							if(mutations[i].refLength(k)!=1||mutations[i].altLength(k)!=1){
+								Integer ii=table_indel.get(mutations[i].pos(k));
 								if(ii==null){
 									ii=counts_indel.size();
-									table_indel.put(mutations[i][j].get(k).pos,counts_indel.size());
-									counts_indel.add(new int[]{i,mutations[i][j].get(k).pos,0});
+									table_indel.put(mutations[i].pos(k),counts_indel.size());
+									counts_indel.add(new int[]{i,mutations[i].pos(k),0});
 								}
 								counts_indel.get(ii)[2]++;
 							}
@@ -2626,34 +2547,24 @@ public class CombinedStatistics_100 {
 			
 			double[] factor_clumps_indel=new double[10000];
 			{
-				long seeds[] = SignificanceNoncoding.Random_nextLongs(rng, chr.length);
+				long seed = rng.nextLong();
 			if(!new File(file_factor_clumps_indel).exists()){
 				
-				SubthreadClumpsDistance_indel[] threads_dist_indel=new SubthreadClumpsDistance_indel[chr.length];
-				for (int i=0;i<threads_dist_indel.length;i++){
-					threads_dist_indel[i]=new SubthreadClumpsDistance_indel();
-					threads_dist_indel[i].i=i;
-					threads_dist_indel[i].coverage_valid=coverage_valid;
-					threads_dist_indel[i].table_skip=table_skip_indel[i];
-					threads_dist_indel[i].mutations=mutations;
-					threads_dist_indel[i].seed=seeds[i];
-					threads_dist_indel[i].start();
+				BinRanges ranges=new BinRanges(mutations,range_bins);
+				SubthreadClumpsDistance_indel[] threads_dist_indel=new SubthreadClumpsDistance_indel[ranges.size()];
+				for (int k=0;k<threads_dist_indel.length;k++){
+					int i=ranges.chr(k);
+					threads_dist_indel[k]=new SubthreadClumpsDistance_indel();
+					threads_dist_indel[k].i=i;
+					threads_dist_indel[k].j_start=ranges.start(k);
+					threads_dist_indel[k].j_end=ranges.end(k);
+					threads_dist_indel[k].coverage_valid=coverage_valid;
+					threads_dist_indel[k].table_skip=table_skip_indel[i];
+					threads_dist_indel[k].mutations=mutations;
+					threads_dist_indel[k].seed=seed;
 				}
 				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_dist_indel.length;i++){
-						if(threads_dist_indel[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
-				}
+				ThreadPool.invokeAll(threads_dist_indel);
 				
 				int[] expected_combi_indel=new int[10000];
 				int[] observed_combi_indel=new int[10000];
@@ -2708,38 +2619,29 @@ public class CombinedStatistics_100 {
 			double[][] avg_clumps_combi_indel=new double[chr.length][];
 			
 			{
-				long seeds[] = SignificanceNoncoding.Random_nextLongs(rng, chr.length);
+				long seed = rng.nextLong();
 			if(!new File(file_clumps_count_combi_indel).exists()){
-				SubthreadClumpsCombi_indel[] threads_combi_indel=new SubthreadClumpsCombi_indel[chr.length];
-				for (int i=0;i<threads_combi_indel.length;i++){
-					threads_combi_indel[i]=new SubthreadClumpsCombi_indel();
-					threads_combi_indel[i].i=i;
-					threads_combi_indel[i].coverage_valid=coverage_valid;
-					threads_combi_indel[i].mutations=mutations;
-					threads_combi_indel[i].factor_clumps=factor_clumps_indel;
-					threads_combi_indel[i].seed=seeds[i];
-					threads_combi_indel[i].start();
+				for (int i=0;i<chr.length;i++){
+					avg_clumps_combi_indel[i]=new double[1+(chr_length[i]-shift_mut)/100000];
+					clumps_combi_indel[i]=new double[1+(chr_length[i]-shift_mut)/100000];
 				}
-				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_combi_indel.length;i++){
-						if(threads_combi_indel[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
+				BinRanges ranges=new BinRanges(mutations,range_bins);
+				SubthreadClumpsCombi_indel[] threads_combi_indel=new SubthreadClumpsCombi_indel[ranges.size()];
+				for (int k=0;k<threads_combi_indel.length;k++){
+					int i=ranges.chr(k);
+					threads_combi_indel[k]=new SubthreadClumpsCombi_indel();
+					threads_combi_indel[k].i=i;
+					threads_combi_indel[k].j_start=ranges.start(k);
+					threads_combi_indel[k].j_end=ranges.end(k);
+					threads_combi_indel[k].coverage_valid=coverage_valid;
+					threads_combi_indel[k].mutations=mutations;
+					threads_combi_indel[k].factor_clumps=factor_clumps_indel;
+					threads_combi_indel[k].seed=seed;
+					threads_combi_indel[k].avg_clumps=avg_clumps_combi_indel[i];
+					threads_combi_indel[k].clumps=clumps_combi_indel[i];
 				}
 				
-				for (int i=0;i<threads_combi_indel.length;i++){
-					avg_clumps_combi_indel[i]=threads_combi_indel[i].avg_clumps;
-					clumps_combi_indel[i]=threads_combi_indel[i].clumps;
-				}
+				ThreadPool.invokeAll(threads_combi_indel);
 				
 				
 				java.io.FileOutputStream out=new java.io.FileOutputStream(file_clumps_count_combi_indel);
@@ -3174,55 +3076,45 @@ public class CombinedStatistics_100 {
 				max_mut[i]=new int[1+(chr_length[i]-shift_mut)/100000];
 			}
 			
+			PositionCounter counter_mut=new PositionCounter();
 			for (int i=0;i<mutations.length;i++){
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=0;j<mutations[i].bins();j++){
 					if(coverage_valid[i][j]){
-						count_mut[i][j]=0;
-						Hashtable<Integer,Integer> table =new Hashtable<Integer,Integer>();
-						ArrayList<int[]> counts=new ArrayList<int[]>();
-						for (int k=0;k<mutations[i][j].size();k++){
-							if(mutations[i][j].get(k).group==0){
-								count_mut[i][j]++;
-								Integer ii=table.get(mutations[i][j].get(k).pos);
-								if(ii==null){
-									ii=counts.size();
-									table.put(mutations[i][j].get(k).pos,ii);
-									counts.add(new int[]{mutations[i][j].get(k).pos,0});
-								}
-								counts.get(ii)[1]++;
-							}
-						}
-						max_mut[i][j]=0;
-						for (int k=0;k<counts.size();k++){
-							if(counts.get(k)[1]>max_mut[i][j]){
-								max_mut[i][j]=counts.get(k)[1];
+						counter_mut.clear();
+						for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+							if(mutations[i].group(k)==0){
+								counter_mut.add(mutations[i].pos(k));
 							}
 						}
+						counter_mut.count();
+						count_mut[i][j]=counter_mut.size();
+						max_mut[i][j]=counter_mut.maxMultiplicity();
 					}
 				}
 			}
 			
-			SubthreadMaxCountFactor[] threads_factors=new SubthreadMaxCountFactor[90];
+			//NB. the factor is fitted on chromosome 1, and the Poisson probabilities are shared with p_hotspot
+			HotspotFactor hotspot_factor=new HotspotFactor();
+			for (int i=0;i<count_mut.length;i++){
+				if(i!=0){
+					continue;
+				}
+				for (int j=0;j<count_mut[i].length;j++){
+					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<=high(chr[i])){
+						double eligible=10000.0*alignability[i][j];
+						if(max_mut[i][j]>0&&alignability[i][j]>0.05){
+							hotspot_factor.add(count_mut[i][j],max_mut[i][j],eligible);
+						}
+					}
+				}
+			}
+			double[] factors=new double[90];
 			double ff=1;
-			for (int i=0;i<threads_factors.length;i++){
-				threads_factors[i]=new SubthreadMaxCountFactor();
-				threads_factors[i].coverage=coverage;
-				threads_factors[i].n=count_mut;
-				threads_factors[i].max=max_mut;		
-				threads_factors[i].f=ff;
+			for (int i=0;i<factors.length;i++){
+				factors[i]=ff;
 				ff*=1.1;
 			}
-			execute(threads_factors,30);
-			
-			int i_max=0;
-			double mmax=-Double.MAX_VALUE;
-			for (int i=0;i<threads_factors.length;i++){
-				if(threads_factors[i].sum>mmax){
-					mmax=threads_factors[i].sum;
-					i_max=i;
-				}
-			}
-			double f_max=threads_factors[i_max].f;
+			double f_max=SignificanceNoncoding.fast_hotspot?hotspot_factor.search(factors):hotspot_factor.maximize(factors);
 			
 			double[][] p_hotspot=new double[chr.length][];
 			for (int i=0;i<chr.length;i++){
@@ -3232,6 +3124,7 @@ public class CombinedStatistics_100 {
 				}
 			}
 			
+			long seed_hotspot=rng.nextLong();
 			for (int i=0;i<count_mut.length;i++){
 				for (int j=0;j<count_mut[i].length;j++){
 					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<=high(chr[i])){
@@ -3241,9 +3134,9 @@ public class CombinedStatistics_100 {
 							double p1_bin=1;
 							double p2_bin=1;
 							
-							p1_bin=Math.pow(new PoissonDistribution(count_mut[i][j]/eligible).cumulativeProbability(max_mut[i][j]-1),eligible-1)*new PoissonDistribution(count_mut[i][j]*f_max/eligible).cumulativeProbability(max_mut[i][j]-1);
-							p2_bin=Math.pow(new PoissonDistribution(count_mut[i][j]/eligible).cumulativeProbability(max_mut[i][j]-2),eligible-1)*new PoissonDistribution(count_mut[i][j]*f_max/eligible).cumulativeProbability(max_mut[i][j]-2);
-							p_hotspot[i][j]=1-(rng.nextDouble()*(p2_bin-p1_bin)+p1_bin);
+							p1_bin=Math.pow(DiscreteTails.poissonCdf(max_mut[i][j]-1,count_mut[i][j]/eligible),eligible-1)*DiscreteTails.poissonCdf(max_mut[i][j]-1,count_mut[i][j]*f_max/eligible);
+							p2_bin=Math.pow(DiscreteTails.poissonCdf(max_mut[i][j]-2,count_mut[i][j]/eligible),eligible-1)*DiscreteTails.poissonCdf(max_mut[i][j]-2,count_mut[i][j]*f_max/eligible);
+							p_hotspot[i][j]=1-(SeedTree.uniform(seed_hotspot,i,j)*(p2_bin-p1_bin)+p1_bin);
 							
 						}
 					}
@@ -3254,79 +3147,26 @@ public class CombinedStatistics_100 {
 			
 			//Destructive Component
 			
-			ArrayList<int[]> exons=new ArrayList<int[]>();
-			java.io.InputStream in=ZipOverlay.fileInputStream(file_exons);
-			BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-			String s="";
-			while((s=input.readLine())!=null){
-				String[] t=s.split("	");
-				
-				exons.add(new int[]{index(t[1],chr,chr2),Integer.parseInt(t[2])+2,Integer.parseInt(t[3])-2});
-			}
-			input.close();
-			
-			ArrayList<Integer>[][] indices=new ArrayList[chr.length][];
-			for (int i=0;i<indices.length;i++){
-				indices[i]=new ArrayList[1+chr_length[i]/10000];
-				for (int j=0;j<indices[i].length;j++){
-					indices[i][j]=new ArrayList<Integer>();
-				}
-			}
-			for (int i=0;i<exons.size();i++){
-				for(int j=(exons.get(i)[1]-5)/10000;j<=1+(exons.get(i)[2]+5)/10000;j++){
-					if(j>=0){
-						indices[exons.get(i)[0]][j].add(i);
-					}
-				}
-			}
+			ExonIndex exon_index=ExonIndex.open(file_exons,chr,chr2);
 			int[][][] destructive=new int[chr.length][][];
 			for (int i=0;i<mutations.length;i++){
-				Hashtable<Integer,Integer> table_positions=new Hashtable<Integer,Integer>();
-				ArrayList<Position> positions=new ArrayList<Position>();
+				ASIndex as_index=read_as_index(i);
 			
-				{ java.io.InputStream in1=ZipOverlay.fileInputStream(file_as_annotation+chr[i]+".txt");
-				input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in1))); }
-				while((s=input.readLine())!=null){
-					String[] t=s.split("	");
-					if(t.length==7){
-						table_positions.put(Integer.parseInt(t[0]), positions.size());
-						positions.add(new Position(Integer.parseInt(t[0]),t[1],t[2],Integer.parseInt(t[3]),new String[]{t[4],t[5],t[6]}));
-					}
-				}
-				input.close();
 				destructive[i]=new int[1+(chr_length[i]-shift_mut)/100000][2];
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=0;j<mutations[i].bins();j++){
 					if(coverage_valid[i][j]){
-						for (int k=0;k<mutations[i][j].size();k++){
-							if(mutations[i][j].get(k).group==0){
-								Integer ii=table_positions.get(mutations[i][j].get(k).pos);
-								if(ii!=null){
+						for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+							if(mutations[i].group(k)==0){
+								int ii=as_index.find(mutations[i].pos(k));
+								if(ii!=-1){
 									destructive[i][j][0]++;
-									if(mutations[i][j].get(k).ref.length()==1&&mutations[i][j].get(k).alt.length()==1){
-										int iii=index(mutations[i][j].get(k).ref,mutations[i][j].get(k).alt);
-										if(positions.get(ii).alt_as[iii].equals("*")){
+									if(mutations[i].refLength(k)==1&&mutations[i].altLength(k)==1){
+										int iii=index(mutations[i].refBase(k),mutations[i].altBase(k));
+										if(as_index.nonsense(ii,iii)){
 											destructive[i][j][1]++;//nonsense
 										}
 										else{
-											int index_chr=i;
-											int pos=mutations[i][j].get(k).pos;
-											
-											int min_dist=10000000;
-											int dist=0;
-											int border=-1;
-											for (int kk=0;kk<indices[index_chr][pos/10000].size();kk++){
-												if(Math.abs(pos-exons.get(indices[index_chr][pos/10000].get(kk))[1])<min_dist){
-													min_dist=Math.abs(pos-exons.get(indices[index_chr][pos/10000].get(kk))[1]);
-													dist=pos-exons.get(indices[index_chr][pos/10000].get(kk))[1];
-													border=0;
-												}
-												if(Math.abs(pos-exons.get(indices[index_chr][pos/10000].get(kk))[2])<min_dist){
-													min_dist=Math.abs(pos-exons.get(indices[index_chr][pos/10000].get(kk))[2]);
-													dist=pos-exons.get(indices[index_chr][pos/10000].get(kk))[2];
-													border=1;
-												}
-											}
-											if((border==0&&-2<=dist&&dist<=1)||(border==1&&-1<=dist&&dist<=2)){
+											if(exon_index.spliceSite(i,mutations[i].pos(k))){
 												destructive[i][j][1]++;//splice_site
 											}
 										}
@@ -3357,16 +3197,16 @@ public class CombinedStatistics_100 {
 			double f_destructive=(double)(n_destructive)/(double)(n_total);
 			
 			ArrayList<double[]> destructive_raw=new ArrayList<double[]>();
+			double[] destructive_tails=new double[2];
 			for (int i=0;i<destructive.length;i++){
 				for (int j=0;j<destructive[i].length;j++){
 					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])){
 						double aX=1;
 						double bX=1;
 						if(destructive[i][j][1]>0){
-							aX=Math.max(0,1-new BinomialDistribution(destructive[i][j][0],f_destructive).cumulativeProbability(destructive[i][j][1]-1));//Math.pow(10, -10)
-							if(destructive[i][j][1]>1){
-								bX=Math.max(0,1-new BinomialDistribution(destructive[i][j][0],f_destructive).cumulativeProbability(destructive[i][j][1]-2));//Math.pow(10, -10)
-							}
+							DiscreteTails.binomialUpperTails(destructive[i][j][1],destructive[i][j][0],f_destructive,destructive_tails);
+							aX=destructive_tails[0];
+							bX=destructive_tails[1];
 							destructive_raw.add(new double[]{destructive[i][j][1],destructive[i][j][0],i,j,aX,bX});
 						}
 					}
@@ -3419,46 +3259,40 @@ public class CombinedStatistics_100 {
 		}
 	}
 	
-	//Subthread to optimize the factor for the hotspot-based p-value
-	private static class SubthreadMaxCountFactor extends Thread{
-		int[][] n=null;
-		int[][] max=null;
-		double[][] coverage=new double[0][];
-		double f=-1;
-		double sum=0;
-		int status=0;
-		
-		public void run(){
-			status=1;
-			double sum_n=0;
-			for (int i=0;i<n.length;i++){
-				if(i!=0){
-					continue;
-				}
-				for (int j=0;j<n[i].length;j++){
-					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<=high(chr[i])){
-						double eligible=10000.0*alignability[i][j];
-						if(max[i][j]>0&&alignability[i][j]>0.05){
-							double p=Math.pow(new PoissonDistribution(n[i][j]/eligible).cumulativeProbability(max[i][j]),eligible-1)*new PoissonDistribution(n[i][j]*f/eligible).cumulativeProbability(max[i][j])-Math.pow(new PoissonDistribution(n[i][j]/eligible).cumulativeProbability(max[i][j]-1),eligible-1)*new PoissonDistribution(n[i][j]*f/eligible).cumulativeProbability(max[i][j]-1);
-							if(p>0){
-								sum+=Math.log(p);
-								sum_n++;
-							}
-							
-						}
-					}
-				}
-			}
-			sum/=sum_n;
-			status=2;
-		}
+	//AS annotation of a chromosome, used to find the coding mutations and to classify them
+	public ASIndex read_as_index(int chr_index) throws java.io.IOException {
+		return ASIndex.open(file_as_annotation+chr[chr_index]+".txt");
 	}
 	
-	//method to compute count-based p-values based on the similarity of mutation rates between tumor types.
-	//for this purpose, the method first reads the counts from all cancer types and esitmates the number of mutations 
+	//SpliceAI scores of the SNVs of a chromosome, by the 1Mb chunk of the file
+	public SpliceIndex read_splice_index(int chr_index) throws java.io.IOException {
+		return SpliceIndex.open(file_splice_ai,chr[chr_index],chr_length[chr_index]/1000000);
+	}
+	
+	//36mer alignability intervals {start, end, group} of a 1Mb chunk of a chromosome
+	public int[][] read_dichotomous(int chr_index, int j) throws java.io.IOException {
+		return AnnotationCache.get("dichotomous:"+file_dichotomous+chr[chr_index]+"_"+j, ()->load_dichotomous(chr_index,j));
+	}
+	
+	private int[][] load_dichotomous(int chr_index, int j) throws java.io.IOException {
+		ArrayList<int[]> intervals=new ArrayList<int[]>();
+		java.io.InputStream in=ZipOverlay.fileInputStream(file_dichotomous+chr[chr_index]+"_"+j+".txt");
+		BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
+		String s="";
+		while((s=input.readLine())!=null){
+			String[] t=s.split("	");
+			intervals.add(new int[]{Integer.parseInt(t[0]),Integer.parseInt(t[1]),Integer.parseInt(t[2])});
+		}
+		input.close();
+		return intervals.toArray(new int[intervals.size()][]);
+	}
+	
+	
+	//method to compute count-based p-values based on the similarity of mutation rates between tumor types.
+	//for this purpose, the method first reads the counts from all cancer types and esitmates the number of mutations 
 	//in each interval based on similarity. based on this estimate, the method computes count-based p-values using a Gamma-Poisson distribution
 	//for 1kb, 10kb and 100kb intervals. it then combines p-values of neighboring 1kb and 10kb intervals using Tippett's method 
-	public static double[][][][] read_counts_all_entities(String file_count,String entity_sel, double[][] coverage, boolean[][] coverage_valid, String file_ww, String file_ww_10, String file_ww_100, java.util.Random rng) throws java.io.IOException {
+	public double[][][][] read_counts_all_entities(String file_count,String entity_sel, double[][] coverage, boolean[][] coverage_valid, String file_ww, String file_ww_10, String file_ww_100, java.util.Random rng) throws java.io.IOException {
 		double[][][] p_result=new double[chr.length][][];
 		int ll=1000;
 		{
@@ -3915,14 +3749,21 @@ public class CombinedStatistics_100 {
 						threads[i].w=(double)(i)/100.0;
 						
 					}
-					execute(threads,30);
-					
 					double max=-Double.MAX_VALUE;
 					double w_max=-1;
-					for (int i=0;i<threads.length;i++){
-						if(threads[i].sum2>max){
-							max=threads[i].sum2;
-							w_max=threads[i].w;
+					if(SignificanceNoncoding.fast_weights){
+						WeightSearch search=new WeightSearch();
+						threads[0].addBins(search);
+						w_max=search.maximize(threads.length-1);
+						max=search.max();
+					}
+					else{
+						ThreadPool.invokeAll(threads);
+						for (int i=0;i<threads.length;i++){
+							if(threads[i].sum2>max){
+								max=threads[i].sum2;
+								w_max=threads[i].w;
+							}
 						}
 					}
 					ww.add(w_max);
@@ -4001,6 +3842,8 @@ public class CombinedStatistics_100 {
 				}
 			}
 			
+			long seed_pp2C=rng.nextLong();
+			double[] cdfs=new double[2];
 			for (int i=0;i<prediction.length;i++){
 				System.out.println(i);
 				for (int j=0;j<prediction[i].length;j++){
@@ -4031,14 +3874,15 @@ public class CombinedStatistics_100 {
 							if(count[i][j]>0){
 								//pp2B[i][j]=Math.max(Math.pow(10, -10), 1-cum_gamma_poisson((int)(count[i][j]-1),alpha[index(prediction[i][j],intervals)]+sum1,beta[index(prediction[i][j],intervals)]+sum2));
 								
-								pp2A= 1-cum_gamma_poisson((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+sum1,beta[index(prediction[i][j],intervals)]+sum2);
+								DiscreteTails.gammaPoissonCdfs((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+sum1,beta[index(prediction[i][j],intervals)]+sum2,cdfs);
+								pp2A=1-cdfs[0];
 								if(count[i][j]>1){
-									pp2B=1-cum_gamma_poisson((int)(count[i][j]-1),alpha[index(prediction[i][j],intervals)]+sum1,beta[index(prediction[i][j],intervals)]+sum2);
+									pp2B=1-cdfs[1];
 									
 								}
 							}
 							
-							pp2C[i][j]=(pp2B-pp2A)*rng.nextDouble()+pp2A;
+							pp2C[i][j]=(pp2B-pp2A)*SeedTree.uniform(seed_pp2C,i,j)+pp2A;
 							
 						}
 						else{
@@ -4134,14 +3978,21 @@ public class CombinedStatistics_100 {
 						threads[i].w=(double)(i)/100.0;
 						
 					}
-					execute(threads,30);
-					
 					double max=-Double.MAX_VALUE;
 					double w_max=-1;
-					for (int i=0;i<threads.length;i++){
-						if(threads[i].sum2>max){
-							max=threads[i].sum2;
-							w_max=threads[i].w;
+					if(SignificanceNoncoding.fast_weights){
+						WeightSearch search=new WeightSearch();
+						threads[0].addBins(search);
+						w_max=search.maximize(threads.length-1);
+						max=search.max();
+					}
+					else{
+						ThreadPool.invokeAll(threads);
+						for (int i=0;i<threads.length;i++){
+							if(threads[i].sum2>max){
+								max=threads[i].sum2;
+								w_max=threads[i].w;
+							}
 						}
 					}
 					ww_10.add(w_max);
@@ -4219,6 +4070,7 @@ public class CombinedStatistics_100 {
 			
 			
 			
+			long seed_pp2_10C=rng.nextLong();
 			for (int i=0;i<prediction_10.length;i++){
 				for (int j=0;j<prediction_10[i].length;j++){
 					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])){
@@ -4241,13 +4093,14 @@ public class CombinedStatistics_100 {
 							double pp2_10A=1.0;
 							double pp2_10B=1.0;
 							if(counts_10[i][j]>0){
-								pp2_10A=1-cum_gamma_poisson((int)(counts_10[i][j]-1),alpha_10[index(prediction_10[i][j],intervals_10)]+sum1,beta_10[index(prediction_10[i][j],intervals_10)]+sum2);
+								DiscreteTails.gammaPoissonCdfs((int)(counts_10[i][j]-1),alpha_10[index(prediction_10[i][j],intervals_10)]+sum1,beta_10[index(prediction_10[i][j],intervals_10)]+sum2,cdfs);
+								pp2_10A=1-cdfs[0];
 								if(counts_10[i][j]>1){
-									pp2_10B=1-cum_gamma_poisson((int)(counts_10[i][j]-2),alpha_10[index(prediction_10[i][j],intervals_10)]+sum1,beta_10[index(prediction_10[i][j],intervals_10)]+sum2);
+									pp2_10B=1-cdfs[1];
 								}
 							}
 							
-							pp2_10C[i][j]=(pp2_10B-pp2_10A)*rng.nextDouble()+pp2_10A;
+							pp2_10C[i][j]=(pp2_10B-pp2_10A)*SeedTree.uniform(seed_pp2_10C,i,j)+pp2_10A;
 							
 							if(Double.isNaN(pp2_10C[i][j])){
 								System.out.println(chr[i]+"	"+(j*10000));
@@ -4358,14 +4211,21 @@ public class CombinedStatistics_100 {
 						threads[i].w=(double)(i)/100.0;
 						
 					}
-					execute(threads,30);
-					
 					double max=-Double.MAX_VALUE;
 					double w_max=-1;
-					for (int i=0;i<threads.length;i++){
-						if(threads[i].sum2>max){
-							max=threads[i].sum2;
-							w_max=threads[i].w;
+					if(SignificanceNoncoding.fast_weights){
+						WeightSearch search=new WeightSearch();
+						threads[0].addBins(search);
+						w_max=search.maximize(threads.length-1);
+						max=search.max();
+					}
+					else{
+						ThreadPool.invokeAll(threads);
+						for (int i=0;i<threads.length;i++){
+							if(threads[i].sum2>max){
+								max=threads[i].sum2;
+								w_max=threads[i].w;
+							}
 						}
 					}
 					ww_100.add(w_max);
@@ -4447,6 +4307,7 @@ public class CombinedStatistics_100 {
 			
 			
 			
+			long seed_pp2_100C=rng.nextLong();
 			for (int i=0;i<prediction_100.length;i++){
 				for (int j=0;j<prediction_100[i].length;j++){
 					if(coverage_valid[i][j]){//low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])
@@ -4469,14 +4330,15 @@ public class CombinedStatistics_100 {
 							double pp2_100A=1.0;
 							double pp2_100B=1.0;
 							if(counts_100[i][j]>0){
-								 pp2_100A=1-cum_gamma_poisson((int)(counts_100[i][j]-1),alpha_100[index(prediction_100[i][j],intervals_100)]+sum1,beta_100[index(prediction_100[i][j],intervals_100)]+sum2);
+								 DiscreteTails.gammaPoissonCdfs((int)(counts_100[i][j]-1),alpha_100[index(prediction_100[i][j],intervals_100)]+sum1,beta_100[index(prediction_100[i][j],intervals_100)]+sum2,cdfs);
+								 pp2_100A=1-cdfs[0];
 								 if(counts_100[i][j]>1){
-									 pp2_100B=1-cum_gamma_poisson((int)(counts_100[i][j]-2),alpha_100[index(prediction_100[i][j],intervals_100)]+sum1,beta_100[index(prediction_100[i][j],intervals_100)]+sum2);
+									 pp2_100B=1-cdfs[1];
 										
 								 }
 							}
 							
-							pp2_100C[i][j]=(pp2_100B-pp2_100A)*rng.nextDouble()+pp2_100A;
+							pp2_100C[i][j]=(pp2_100B-pp2_100A)*SeedTree.uniform(seed_pp2_100C,i,j)+pp2_100A;
 							
 							if(Double.isNaN(pp2_100C[i][j])){
 								System.out.println(chr[i]+"	"+(j*10000));
@@ -4541,131 +4403,8 @@ public class CombinedStatistics_100 {
 		
 	}
 	
-	//execute multiple Threads in parallel
-	public static void execute(SubthreadX[] threads, int no_cpu){
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-		
-		
-	}
-	
-	//execute multiple Threads in parallel
-	public static void execute(SubthreadX_10[] threads, int no_cpu){
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-		
-		
-	}
-	
-	//execute multiple Threads in parallel
-	public static void execute(SubthreadX_100[] threads, int no_cpu) throws java.io.IOException {
-		boolean all_done=false;
-		while(!all_done){
-			all_done=true;
-			int n1=0;
-			int n2=0;		
-			for (int i=0;i<threads.length;i++){
-				if(threads[i].status==0){
-					n1++;
-				}
-				if(threads[i].status==1){
-					n2++;
-				}
-				if(threads[i].status!=2){
-					all_done=false;
-				}
-			}
-			if(n1>0&&n2<no_cpu){
-				for (int i=0;i<threads.length;i++){
-					if(threads[i].status==0){
-						threads[i].status=1;
-						threads[i].start();
-						n1--;
-						n2++;
-						if(n1==0||n2>=no_cpu){
-							break;
-						}
-					}
-				}
-			}
-			try{
-				Thread.sleep(10);
-			}
-			catch(java.lang.InterruptedException e){
-			}
-		}
-		
-		
-	}
-	
 	//Subthread to optimize the local average weights of similarity-based statistics
-	private static class SubthreadX extends Thread{
+	private static class SubthreadX extends TaskEx{
 		double[][] ssum=new double[chr.length][];
 		double[][] ssum2=new double[chr.length][];
 		double[][] prediction=new double[0][];
@@ -4681,41 +4420,61 @@ public class CombinedStatistics_100 {
 		double w=0;
 		
 		double sum2=0;
-		volatile int status=0;
 		
-		public void run(){
-			status=1;
+		public void runEx(){
+			double[] ab=new double[2];
 			for (int i=0;i<prediction.length;i++){
 				if(i!=0){
 					continue;		
 				}
 				for (int j=0;j<prediction[i].length;j++){
-					if(low(chr[i])<=coverage[i][j*ll/10000]&&coverage[i][j*ll/10000]<high(chr[i])&&!Double.isNaN(prediction[i][j])){
-						double a=0;
-						double b=0;
-						for (int k=0;k<10;k++){
-							if(j-space-10*kk-k+9>=0&&(j+space+10*kk+k-9)*ll/10000<coverage[i].length&&low(chr[i])<=coverage[i][(j-space-10*kk-k+9)*ll/10000]&&coverage[i][(j-space-10*kk-k+9)*ll/10000]<high(chr[i])&&low(chr[i])<=coverage[i][(j+space+10*kk+k-9)*ll/10000]&&coverage[i][(j+space+10*kk+k-9)*ll/10000]<high(chr[i])){
-								a+=+w*count[i][j-space-10*kk-k+9]+w*count[i][j+space+10*kk+k-9];
-								b+=2*w;
-							}
-						}
-						if(!skip[i][j]){
-							double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+a+ssum[i][j],beta[index(prediction[i][j],intervals)]+b+ssum2[i][j]);
-							if(!Double.isNaN(pp)){
-								sum2+=pp;
-							}
-								
+					if(ring(i,j,w,ab)){
+						double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+ab[0]+ssum[i][j],beta[index(prediction[i][j],intervals)]+ab[1]+ssum2[i][j]);
+						if(!Double.isNaN(pp)){
+							sum2+=pp;
 						}
 					}
 				}
 			}
-			status=2;
+		}
+		
+		//collect the statistics of the bins, with the counts of the ring at weight 1
+		public void addBins(WeightSearch search){
+			double[] ab=new double[2];
+			for (int i=0;i<prediction.length;i++){
+				if(i!=0){
+					continue;		
+				}
+				for (int j=0;j<prediction[i].length;j++){
+					if(ring(i,j,1,ab)){
+						search.add((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+ssum[i][j],beta[index(prediction[i][j],intervals)]+ssum2[i][j],ab[0],ab[1]);
+					}
+				}
+			}
+		}
+		
+		//the counts of the ring of the bin j times weight into ab[0] and the weight of the ring into ab[1], false if the bin is not used
+		private boolean ring(int i,int j,double weight,double[] ab){
+			if(!(low(chr[i])<=coverage[i][j*ll/10000]&&coverage[i][j*ll/10000]<high(chr[i])&&!Double.isNaN(prediction[i][j]))||skip[i][j]){
+				return false;
+			}
+			double a=0;
+			double b=0;
+			for (int k=0;k<10;k++){
+				if(j-space-10*kk-k+9>=0&&(j+space+10*kk+k-9)*ll/10000<coverage[i].length&&low(chr[i])<=coverage[i][(j-space-10*kk-k+9)*ll/10000]&&coverage[i][(j-space-10*kk-k+9)*ll/10000]<high(chr[i])&&low(chr[i])<=coverage[i][(j+space+10*kk+k-9)*ll/10000]&&coverage[i][(j+space+10*kk+k-9)*ll/10000]<high(chr[i])){
+					a+=+weight*count[i][j-space-10*kk-k+9]+weight*count[i][j+space+10*kk+k-9];
+					b+=2*weight;
+				}
+			}
+			ab[0]=a;
+			ab[1]=b;
+			return true;
 		}
 		
 	}
 	
 	//Subthread to optimize the local average weights of similarity-based statistics
-	private static class SubthreadX_10 extends Thread{
+	private static class SubthreadX_10 extends TaskEx{
 		double[][] ssum=new double[chr.length][];
 		double[][] ssum2=new double[chr.length][];
 		double[][] prediction=new double[0][];
@@ -4730,41 +4489,59 @@ public class CombinedStatistics_100 {
 		double w=0;
 		
 		double sum2=0;
-		volatile int status=0;
 		
-		public void run(){
-			status=1;
+		public void runEx(){
+			double[] ab=new double[2];
 			for (int i=0;i<prediction.length;i++){
 				if(i!=0){
 					continue;		
 				}
 				for (int j=0;j<prediction[i].length;j++){
-					if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])&&!Double.isNaN(prediction[i][j])){
-						double a=0;
-						double b=0;
-						if(j-space-kk>=0&&j+space+kk<coverage[i].length&&low(chr[i])<=coverage[i][(j-space-kk)]&&coverage[i][(j-space-kk)]<high(chr[i])&&low(chr[i])<=coverage[i][(j+space+kk)]&&coverage[i][(j+space+kk)]<high(chr[i])){
-							a+=+w*count[i][j-space-kk]+w*count[i][j+space+kk];
-							b+=2*w;
-						}
-							
-						
-						if(!skip[i][j]){
-							double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+a+ssum[i][j],beta[index(prediction[i][j],intervals)]+b+ssum2[i][j]);
-							if(!Double.isNaN(pp)){
-								sum2+=pp;
-							}
-								
+					if(ring(i,j,w,ab)){
+						double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+ab[0]+ssum[i][j],beta[index(prediction[i][j],intervals)]+ab[1]+ssum2[i][j]);
+						if(!Double.isNaN(pp)){
+							sum2+=pp;
 						}
 					}
 				}
 			}
-			status=2;
+		}
+		
+		//collect the statistics of the bins, with the counts of the ring at weight 1
+		public void addBins(WeightSearch search){
+			double[] ab=new double[2];
+			for (int i=0;i<prediction.length;i++){
+				if(i!=0){
+					continue;		
+				}
+				for (int j=0;j<prediction[i].length;j++){
+					if(ring(i,j,1,ab)){
+						search.add((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+ssum[i][j],beta[index(prediction[i][j],intervals)]+ssum2[i][j],ab[0],ab[1]);
+					}
+				}
+			}
+		}
+		
+		//the counts of the ring of the bin j times weight into ab[0] and the weight of the ring into ab[1], false if the bin is not used
+		private boolean ring(int i,int j,double weight,double[] ab){
+			if(!(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])&&!Double.isNaN(prediction[i][j]))||skip[i][j]){
+				return false;
+			}
+			double a=0;
+			double b=0;
+			if(j-space-kk>=0&&j+space+kk<coverage[i].length&&low(chr[i])<=coverage[i][(j-space-kk)]&&coverage[i][(j-space-kk)]<high(chr[i])&&low(chr[i])<=coverage[i][(j+space+kk)]&&coverage[i][(j+space+kk)]<high(chr[i])){
+				a+=+weight*count[i][j-space-kk]+weight*count[i][j+space+kk];
+				b+=2*weight;
+			}
+			ab[0]=a;
+			ab[1]=b;
+			return true;
 		}
 		
 	}
 	
 	//Subthread to optimize the local average weights of similarity-based statistics
-	private static class SubthreadX_100 extends Thread{
+	private static class SubthreadX_100 extends TaskEx{
 		double[][] ssum=new double[chr.length][];
 		double[][] ssum2=new double[chr.length][];
 		double[][] prediction=new double[0][];
@@ -4779,35 +4556,53 @@ public class CombinedStatistics_100 {
 		double w=0;
 		
 		double sum2=0;
-		volatile int status=0;
 		
-		public void run(){
-			status=1;
+		public void runEx(){
+			double[] ab=new double[2];
 			for (int i=0;i<prediction.length;i++){
 				if(i!=0){
 					continue;		
 				}
 				for (int j=0;j<prediction[i].length;j++){
-					if(coverage_valid[i][j]&&!Double.isNaN(prediction[i][j])){
-						double a=0;
-						double b=0;
-						if(j-space-kk>=0&&j+space+kk<coverage_valid[i].length&&coverage_valid[i][(j-space-kk)]&&coverage_valid[i][(j+space+kk)]){
-							a+=+w*count[i][j-space-kk]+w*count[i][j+space+kk];
-							b+=2*w;
-						}
-							
-						
-						if(!skip[i][j]){
-							double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+a+ssum[i][j],beta[index(prediction[i][j],intervals)]+b+ssum2[i][j]);
-							if(!Double.isNaN(pp)){
-								sum2+=pp;
-							}
-								
+					if(ring(i,j,w,ab)){
+						double pp=log_gamma_poisson_ab((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+ab[0]+ssum[i][j],beta[index(prediction[i][j],intervals)]+ab[1]+ssum2[i][j]);
+						if(!Double.isNaN(pp)){
+							sum2+=pp;
 						}
 					}
 				}
 			}
-			status=2;
+		}
+		
+		//collect the statistics of the bins, with the counts of the ring at weight 1
+		public void addBins(WeightSearch search){
+			double[] ab=new double[2];
+			for (int i=0;i<prediction.length;i++){
+				if(i!=0){
+					continue;		
+				}
+				for (int j=0;j<prediction[i].length;j++){
+					if(ring(i,j,1,ab)){
+						search.add((int)(count[i][j]),alpha[index(prediction[i][j],intervals)]+ssum[i][j],beta[index(prediction[i][j],intervals)]+ssum2[i][j],ab[0],ab[1]);
+					}
+				}
+			}
+		}
+		
+		//the counts of the ring of the bin j times weight into ab[0] and the weight of the ring into ab[1], false if the bin is not used
+		private boolean ring(int i,int j,double weight,double[] ab){
+			if(!(coverage_valid[i][j]&&!Double.isNaN(prediction[i][j]))||skip[i][j]){
+				return false;
+			}
+			double a=0;
+			double b=0;
+			if(j-space-kk>=0&&j+space+kk<coverage_valid[i].length&&coverage_valid[i][(j-space-kk)]&&coverage_valid[i][(j+space+kk)]){
+				a+=+weight*count[i][j-space-kk]+weight*count[i][j+space+kk];
+				b+=2*weight;
+			}
+			ab[0]=a;
+			ab[1]=b;
+			return true;
 		}
 		
 	}
@@ -4817,15 +4612,6 @@ public class CombinedStatistics_100 {
 		return Gamma.logGamma(k+alpha)-Gamma.logGamma(k+1)-Gamma.logGamma(alpha)+Math.log(beta/(beta+1))*alpha+Math.log(1/(beta+1))*k;
 	}
 	
-	//cumulative density function of the Gamma-Poisson distribution
-	public static double cum_gamma_poisson(int k,double alpha, double beta) {
-		double sum=0;
-		for(int i=0;i<=k;i++){
-			sum+=Math.exp(log_gamma_poisson_ab(i,alpha,beta));
-		}
-		return sum;
-	}
-	
 	
 	public static int index(double x, double[] intervals){
 		if(x<intervals[0]){
@@ -4878,79 +4664,17 @@ public class CombinedStatistics_100 {
 		return avg;
 	}
 	
-	//check for mutations in repetitive regions
-	public static boolean is_msi1(Mutation mut, ArrayList<char[]> genome){
-		
-		int len_max=0;
-		int rep_len_max=0;
-		
-		for (int rep_len=1;rep_len<=5;rep_len++){
-			int k=0;
-			while(genome(mut.pos+1,mut.pos+rep_len,genome).equals(genome(mut.pos+(k+1)*rep_len+1,mut.pos+(k+2)*rep_len,genome))){
-				k++;
-				if (k*rep_len>=5)   // NB. early exit for OOB
-					return !mut.coding;
+	//check for mutations in repetitive regions (msi) and in MSI specific nucleotide contexts (msi2)
+	public static void annotate_msi(MutationStore mutations, MsiContextMask mask){
+		for (int k=0;k<mutations.size();k++){
+			if(mutations.coding(k)){
+				mutations.setMsi(k,false,false);
+				continue;
 			}
-			if(k*rep_len>len_max){
-				len_max=k*rep_len;
-				rep_len_max=rep_len;
-			}
-			
-			k=0;
-			while(genome(mut.pos-rep_len,mut.pos-1,genome).equals(genome(mut.pos-((k+2)*rep_len),mut.pos-((k+1)*rep_len+1),genome))){
-				k++;
-				if (k*rep_len>=5)
-					return !mut.coding;
-			}
-			if(k*rep_len>len_max){
-				len_max=k*rep_len;
-				rep_len_max=rep_len;
-			}
-		}
-		
-		
-		if(!mut.coding&&len_max>=5){
-			return true;
+			int context=mask.context(mutations.pos(k));
+			mutations.setMsi(k,(context&MsiDetector.REPEAT)!=0,(context&MsiDetector.MSI_CONTEXT)!=0);
 		}
-		
-		return false;
-		
-	}
-	
-	//reference nucleotide(s) of Hg19
-	public static String genome(int start_pos, int end_pos, ArrayList<char[]> genome){
-		String g="";
-		for (int pos=start_pos;pos<=end_pos;pos++){
-			g=g+genome(pos,genome);
-		}
-		return g;
 	}
-
-	//check for mutations in MSI specific nucleotide contexts
-	public static boolean is_msi2(Mutation mut, ArrayList<char[]> genome){
-		
-		
-		int len2=0;
-		boolean context_a=false;
-		if(genome(mut.pos,genome)=='A'&&genome(mut.pos-1,genome)=='A'&&genome(mut.pos+1,genome)=='G'){
-			context_a=true;
-			while(genome(mut.pos+2+len2,genome)=='T'){
-				len2++;
-			}
-		}
-		else if(genome(mut.pos,genome)=='T'&&genome(mut.pos-1,genome)=='C'&&genome(mut.pos+1,genome)=='T'){
-			context_a=true;
-			while(genome(mut.pos-2-len2,genome)=='A'){
-				len2++;
-			}
-		}
-		
-		if(!mut.coding&&context_a&&len2>=3){
-			return true;
-		}
-		return false;
-		
-	}	
 		
 	//variance of a count-based distribution function
 	public static double var(int[] histo){
@@ -4982,7 +4706,7 @@ public class CombinedStatistics_100 {
 	
 	//optimize the coefficients to model the variance of cluster scores based on their distribution average.
 	//factor1 establishes a linear link between average and variance, factor2 a quadratic link
-	public static double[] max_factor(double[][] clumps_combi, double[][] avg_clumps_combi, boolean[][] coverage_valid){
+	public double[] max_factor(double[][] clumps_combi, double[][] avg_clumps_combi, boolean[][] coverage_valid){
 		int top = 0;
 		for (int i = 0; i < clumps_combi.length; ++i)
 			for (int j = 0; j < clumps_combi[i].length; ++j)
@@ -5013,134 +4737,118 @@ public class CombinedStatistics_100 {
 	}
 	
 	//Subthread to determine the distance between mutations (all mutations) to optimize weights in the cluster score
-	private static class SubthreadClumpsDistance extends Thread{
+	private class SubthreadClumpsDistance extends TaskEx{
 		
 		boolean[][] coverage_valid=null;
-		volatile int status=0;
 		int i=-1;
-		ArrayList<Mutation>[][] mutations=null;
+		int j_start=0;
+		int j_end=0;
+		MutationStore[] mutations=null;
 		Hashtable<Integer,Integer> table_skip=null;
 		int[] observed=new int[10000];
 		int[] expected=new int[10000];
 		long seed;
 		
-		public void run(){
-			status=1;
-			java.util.Random random=new java.util.Random(seed);
+		public void runEx(){
+			java.util.Random random=new java.util.Random();
+			ClumpKernel kernel=new ClumpKernel();
 			
 			{
 				
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=j_start;j<j_end;j++){
 					if(table_skip.get(j)!=null){
 						//System.out.println("Skip "+chr[i]+"	"+j);
 						continue;
 					}
 					if(coverage_valid[i][j]){
-						add(observed,clumps3_mut_distance(mutations[i][j]));
-						int[] nn_1=n_combi(mutations[i][j]);
+						clumps3_mut_distance(mutations[i],j,kernel,observed);
+						int[] nn_1=n_combi(mutations[i],j);
+						random.setSeed(SeedTree.derive(seed,i,j));
+						ClumpSimulation simulation=new ClumpSimulation(interval_align[i][j],nn_1);
 						for (int k=0;k<10;k++){
-							ArrayList<ArrayList<Integer>> x=new ArrayList<ArrayList<Integer>>();
-							for (int l=0;l<nn_1.length;l++){
-								x.add(new ArrayList<Integer>());
-								for (int ll=0;ll<nn_1[l];ll++){
-									x.get(l).add(select(interval_align[i][j],random));
-									
-								}
-							}
-							add(expected,clumps3_distance(x));
+							simulation.draw(random);
+							simulation.addDistances(expected);
 						}
 					}
 				}
 			}
-			System.out.println("End "+i);
-			status=2;
+			System.out.println("End "+i+"	"+j_start);
 		}
 		
 	}
 	
 	//Subthread to determine the distance between mutations (indels only) to optimize weights in the cluster score
-	private static class SubthreadClumpsDistance_indel extends Thread{
+	private class SubthreadClumpsDistance_indel extends TaskEx{
 		
 		boolean[][] coverage_valid=null;
-		volatile int status=0;
 		int i=-1;
-		ArrayList<Mutation>[][] mutations=null;
+		int j_start=0;
+		int j_end=0;
+		MutationStore[] mutations=null;
 		Hashtable<Integer,Integer> table_skip=null;
 		int[] observed=new int[10000];
 		int[] expected=new int[10000];
 		long seed;
 		
-		public void run(){
-			status=1;
-			java.util.Random random=new java.util.Random(seed);
+		public void runEx(){
+			java.util.Random random=new java.util.Random();
+			ClumpKernel kernel=new ClumpKernel();
 			
 			{
 				
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=j_start;j<j_end;j++){
 					if(table_skip.get(j)!=null){
 						//System.out.println("Skip "+chr[i]+"	"+j);
 						continue;
 					}
 					if(coverage_valid[i][j]){
-						add(observed,clumps3_mut_distance_indel(mutations[i][j]));
-						int[] nn_1=n_combi_indel(mutations[i][j]);
+						clumps3_mut_distance_indel(mutations[i],j,kernel,observed);
+						int[] nn_1=n_combi_indel(mutations[i],j);
+						random.setSeed(SeedTree.derive(seed,i,j));
+						ClumpSimulation simulation=new ClumpSimulation(interval_align[i][j],nn_1);
 						for (int k=0;k<10;k++){
-							ArrayList<ArrayList<Integer>> x=new ArrayList<ArrayList<Integer>>();
-							for (int l=0;l<nn_1.length;l++){
-								x.add(new ArrayList<Integer>());
-								for (int ll=0;ll<nn_1[l];ll++){
-									x.get(l).add(select(interval_align[i][j],random));
-									
-								}
-							}
-							add(expected,clumps3_distance(x));
+							simulation.draw(random);
+							simulation.addDistances(expected);
 						}
 					}
 				}
 			}
-			System.out.println("End "+i);
-			status=2;
+			System.out.println("End "+i+"	"+j_start);
 		}
 		
 	}
 	
 	//Subthread to determine the expected and observed clustering score for each intervall (all mutations)
-	private static class SubthreadClumpsCombi extends Thread{
+	private class SubthreadClumpsCombi extends TaskEx{
 		
 		boolean[][] coverage_valid=null;
-		volatile int status=0;
 		int i=-1;
+		int j_start=0;
+		int j_end=0;
 		double[] avg_clumps=null;
 		double[] clumps=null;
 		double[] factor_clumps=null;
-		ArrayList<Mutation>[][] mutations=null;
+		MutationStore[] mutations=null;
 		long seed;
 		
-		public void run(){
-			status=1;
-			java.util.Random random=new java.util.Random(seed);
+		public void runEx(){
+			java.util.Random random=new java.util.Random();
+			ClumpKernel kernel=new ClumpKernel();
 			
 			{
 				
-				avg_clumps=new double[1+(chr_length[i]-shift_mut)/100000];
-				clumps=new double[1+(chr_length[i]-shift_mut)/100000];
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=j_start;j<j_end;j++){
 					if(coverage_valid[i][j]){
 						
-						double c_1XX=clumps3_mut_combi(mutations[i][j],factor_clumps);//,factor
+						double c_1XX=clumps3_mut_combi(mutations[i],j,factor_clumps,kernel);//,factor
 						double avg_1XXXX=0;
 						if(c_1XX>0){
-							int[] nn_1=n_combi(mutations[i][j]);
+							int[] nn_1=n_combi(mutations[i],j);
+							random.setSeed(SeedTree.derive(seed,i,j));
+							ClumpSimulation simulation=new ClumpSimulation(interval_align[i][j],nn_1);
 							for (int k=0;k<100;k++){
-								ArrayList<ArrayList<Integer>> x=new ArrayList<ArrayList<Integer>>();
-								for (int l=0;l<nn_1.length;l++){
-									x.add(new ArrayList<Integer>());
-									for (int ll=0;ll<nn_1[l];ll++){
-										x.get(l).add(select(interval_align[i][j],random));
-										
-									}
-								}
-								avg_1XXXX+=clumps3(x);//,factor
+								simulation.draw(random);
+								avg_1XXXX+=simulation.score();//,factor
 							}
 							avg_1XXXX/=100.0;
 						}
@@ -5152,49 +4860,42 @@ public class CombinedStatistics_100 {
 					}
 				}
 			}
-			System.out.println("End "+i);
-			status=2;
+			System.out.println("End "+i+"	"+j_start);
 		}
 		
 	}
 	
 	//Subthread to determine the expected and observed clustering score for each intervall (indels only)
-	private static class SubthreadClumpsCombi_indel extends Thread{
+	private class SubthreadClumpsCombi_indel extends TaskEx{
 		
 		boolean[][] coverage_valid=null;
-		volatile int status=0;
 		int i=-1;
+		int j_start=0;
+		int j_end=0;
 		double[] avg_clumps=null;
 		double[] clumps=null;
 		double[] factor_clumps=null;
-		ArrayList<Mutation>[][] mutations=null;
+		MutationStore[] mutations=null;
 		long seed;
 		
-		public void run(){
-			status=1;
-			java.util.Random random=new java.util.Random(seed);
+		public void runEx(){
+			java.util.Random random=new java.util.Random();
+			ClumpKernel kernel=new ClumpKernel();
 			
 			{
 				
-				avg_clumps=new double[1+(chr_length[i]-shift_mut)/100000];
-				clumps=new double[1+(chr_length[i]-shift_mut)/100000];
-				for (int j=0;j<mutations[i].length;j++){
+				for (int j=j_start;j<j_end;j++){
 					if(coverage_valid[i][j]){
 						
-						double c_1XX=clumps3_mut_combi_indel(mutations[i][j],factor_clumps);//,factor
+						double c_1XX=clumps3_mut_combi_indel(mutations[i],j,factor_clumps,kernel);//,factor
 						double avg_1XXXX=0;
 						if(c_1XX>0){
-							int[] nn_1=n_combi_indel(mutations[i][j]);
+							int[] nn_1=n_combi_indel(mutations[i],j);
+							random.setSeed(SeedTree.derive(seed,i,j));
+							ClumpSimulation simulation=new ClumpSimulation(interval_align[i][j],nn_1);
 							for (int k=0;k<100;k++){
-								ArrayList<ArrayList<Integer>> x=new ArrayList<ArrayList<Integer>>();
-								for (int l=0;l<nn_1.length;l++){
-									x.add(new ArrayList<Integer>());
-									for (int ll=0;ll<nn_1[l];ll++){
-										x.get(l).add(select(interval_align[i][j],random));
-										
-									}
-								}
-								avg_1XXXX+=clumps3(x);//,factor
+								simulation.draw(random);
+								avg_1XXXX+=simulation.score();//,factor
 							}
 							avg_1XXXX/=100.0;
 						}
@@ -5206,255 +4907,112 @@ public class CombinedStatistics_100 {
 					}
 				}
 			}
-			System.out.println("End "+i);
-			status=2;
-		}
-		
-	}
-	
-	
-	//count the pairwise distance between mutations
-	public static int[] clumps3_distance(ArrayList<ArrayList<Integer>> pos){//, double[] factor
-		int[] histo=new int[10000];
-		double gamma=Math.log(0.5)/100.0;
-		if(pos.size()<=1){
-			return histo;
-		}
-		
-		for (int i=0;i<pos.size()-1;i++){
-			for (int j=i+1;j<pos.size();j++){
-				double d=dist(pos.get(i),pos.get(j));
-				if(d<histo.length){
-					histo[(int)(d)]++;
-					
-				}
-			}
-		}
-		return histo;
-	}
-	
-	//count the pairwise distance between mutations
-	public static int[] clumps3_mut_distance(ArrayList<Mutation> mutations){//ArrayList<Integer> pos, ArrayList<Integer> donors, double[] factor
-		if(mutations.size()<=1){
-			return new int[10000];
+			System.out.println("End "+i+"	"+j_start);
 		}
 		
-		ArrayList<ArrayList<Integer>> pos_clusters=new ArrayList<ArrayList<Integer>>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).group==0){//||mutations.get(i).group==1
-				Integer ii=table.get(mutations.get(i).donor);
-				if(ii==null){
-					ii=pos_clusters.size();
-					table.put(mutations.get(i).donor, pos_clusters.size());
-					pos_clusters.add(new ArrayList<Integer>());
-				}
-				pos_clusters.get(ii).add(mutations.get(i).pos);
-			}
-			
-		}
-		return clumps3_distance(pos_clusters);//,factor
-				
 	}
 	
-	//count the pairwise distance between mutations (indels only)
-	public static int[] clumps3_mut_distance_indel(ArrayList<Mutation> mutations){//ArrayList<Integer> pos, ArrayList<Integer> donors, double[] factor
-		if(mutations.size()<=1){
-			return new int[10000];
-		}
-		
-		ArrayList<ArrayList<Integer>> pos_clusters=new ArrayList<ArrayList<Integer>>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).ref.length()!=1||mutations.get(i).alt.length()!=1){
-				if(mutations.get(i).group==0){//||mutations.get(i).group==1
-					Integer ii=table.get(mutations.get(i).donor);
-					if(ii==null){
-						ii=pos_clusters.size();
-						table.put(mutations.get(i).donor, pos_clusters.size());
-						pos_clusters.add(new ArrayList<Integer>());
-					}
-					pos_clusters.get(ii).add(mutations.get(i).pos);
-				}
-			}
-			
-		}
-		return clumps3_distance(pos_clusters);//,factor
-				
-	}
 	
-	//clustering score of mutations
-	public static double clumps3(ArrayList<ArrayList<Integer>> pos){//, double[] factor
-		double gamma=Math.log(0.5)/100.0;
-		if(pos.size()<=1){
-			return 0;
-		}
-		
-		double sum=0;
-		for (int i=0;i<pos.size()-1;i++){
-			for (int j=i+1;j<pos.size();j++){
-				double d=dist(pos.get(i),pos.get(j));
-				if(d<Double.MAX_VALUE){
-					sum+=Math.exp(gamma*d);//*factor(d,factor)//Math.abs(pos.get(i)-pos.get(j))	
-					
-				}
+	//count the pairwise distance between mutations, added to histo
+	public static void clumps3_mut_distance(MutationStore mutations, int bin, ClumpKernel kernel, int[] histo){
+		kernel.clear();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.group(i)==0){//||mutations.group(i)==1
+				kernel.add(mutations.pos(i),mutations.donor(i));
 			}
 		}
-		return sum;
+		kernel.addDistances(histo);
 	}
 	
-	//clustering score of mutations (weighted version)
-	public static double clumps3(ArrayList<ArrayList<Integer>> pos, double[] factor_clumps){//, double[] factor
-		double gamma=Math.log(0.5)/100.0;
-		if(pos.size()<=1){
-			return 0;
-		}
-		
-		double sum=0;
-		for (int i=0;i<pos.size()-1;i++){
-			for (int j=i+1;j<pos.size();j++){
-				double d=dist(pos.get(i),pos.get(j));
-				if(d<Double.MAX_VALUE){
-					sum+=Math.exp(gamma*d)/factor_clumps[Math.min(factor_clumps.length-1, (int)(d))];//*factor(d,factor)//Math.abs(pos.get(i)-pos.get(j))	
-					
+	//count the pairwise distance between mutations (indels only), added to histo
+	public static void clumps3_mut_distance_indel(MutationStore mutations, int bin, ClumpKernel kernel, int[] histo){
+		kernel.clear();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.refLength(i)!=1||mutations.altLength(i)!=1){
+				if(mutations.group(i)==0){//||mutations.group(i)==1
+					kernel.add(mutations.pos(i),mutations.donor(i));
 				}
 			}
 		}
-		return sum;
+		kernel.addDistances(histo);
 	}
 	
 	//clustering score of mutations
-	public static double clumps3_mut(ArrayList<Mutation> mutations){//ArrayList<Integer> pos, ArrayList<Integer> donors, double[] factor
-		if(mutations.size()<=1){
-			return 0;
-		}
-		
-		ArrayList<ArrayList<Integer>> pos_clusters=new ArrayList<ArrayList<Integer>>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).group==0){//||mutations.get(i).group==1
-				Integer ii=table.get(mutations.get(i).donor);
-				if(ii==null){
-					ii=pos_clusters.size();
-					table.put(mutations.get(i).donor, pos_clusters.size());
-					pos_clusters.add(new ArrayList<Integer>());
-				}
-				pos_clusters.get(ii).add(mutations.get(i).pos);
+	public static double clumps3_mut(MutationStore mutations, int bin, ClumpKernel kernel){
+		kernel.clear();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.group(i)==0){//||mutations.group(i)==1
+				kernel.add(mutations.pos(i),mutations.donor(i));
 			}
-			
 		}
-		return clumps3(pos_clusters);//,factor
-				
+		return kernel.score(null);
 	}
 	
 	//clustering score of mutations (weighted version)
-	public static double clumps3_mut_combi(ArrayList<Mutation> mutations, double[] factor_clumps){//ArrayList<Integer> pos, ArrayList<Integer> donors, double[] factor
-		if(mutations.size()<=1){
-			return 0;
-		}
-		
-		ArrayList<ArrayList<Integer>> pos_clusters=new ArrayList<ArrayList<Integer>>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).group==0){//||mutations.get(i).group==1
-				Integer ii=table.get(mutations.get(i).donor);
-				if(ii==null){
-					ii=pos_clusters.size();
-					table.put(mutations.get(i).donor, pos_clusters.size());
-					pos_clusters.add(new ArrayList<Integer>());
-				}
-				pos_clusters.get(ii).add(mutations.get(i).pos);
+	public static double clumps3_mut_combi(MutationStore mutations, int bin, double[] factor_clumps, ClumpKernel kernel){
+		kernel.clear();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.group(i)==0){//||mutations.group(i)==1
+				kernel.add(mutations.pos(i),mutations.donor(i));
 			}
-			
 		}
-		return clumps3(pos_clusters,factor_clumps);//,factor
-				
+		return kernel.score(factor_clumps);
 	}
 	
 	//clustering score of mutations (weighted version, indels only)
-	public static double clumps3_mut_combi_indel(ArrayList<Mutation> mutations, double[] factor_clumps){//ArrayList<Integer> pos, ArrayList<Integer> donors, double[] factor
-		if(mutations.size()<=1){
-			return 0;
-		}
-		
-		ArrayList<ArrayList<Integer>> pos_clusters=new ArrayList<ArrayList<Integer>>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).ref.length()!=1||mutations.get(i).alt.length()!=1){
-				if(mutations.get(i).group==0){//||mutations.get(i).group==1
-					Integer ii=table.get(mutations.get(i).donor);
-					if(ii==null){
-						ii=pos_clusters.size();
-						table.put(mutations.get(i).donor, pos_clusters.size());
-						pos_clusters.add(new ArrayList<Integer>());
-					}
-					pos_clusters.get(ii).add(mutations.get(i).pos);
+	public static double clumps3_mut_combi_indel(MutationStore mutations, int bin, double[] factor_clumps, ClumpKernel kernel){
+		kernel.clear();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.refLength(i)!=1||mutations.altLength(i)!=1){
+				if(mutations.group(i)==0){//||mutations.group(i)==1
+					kernel.add(mutations.pos(i),mutations.donor(i));
 				}
 			}
-			
-			
 		}
-		return clumps3(pos_clusters,factor_clumps);//,factor
-				
+		return kernel.score(factor_clumps);
 	}
 	
 	//Subthread to annotate MSI status to each mutation
-	private static class Subthread_MSI extends ThreadEx{
+	private class Subthread_MSI extends TaskEx{
 		int chr_index=-1;
-		int status=0;
-		ArrayList<Mutation>[][] mutations=null;
+		MutationStore[] mutations=null;
 		public void runEx() throws java.io.IOException {
-			status=1;
-			ArrayList<char[]> genome=read_genome(chr[chr_index]);
-			
-			for (int i=0;i<mutations[chr_index].length;i++){
-				for(int j=0;j<mutations[chr_index][i].size();j++){
-					mutations[chr_index][i].get(j).msi=is_msi1(mutations[chr_index][i].get(j),genome);
-					mutations[chr_index][i].get(j).msi2=is_msi2(mutations[chr_index][i].get(j),genome);
-				}
-			}
-			status=2;
+			MsiContextMask mask=MsiContextMask.open(file_genome+chr[chr_index]+".fa");
+
+			annotate_msi(mutations[chr_index],mask);
 		}
 	}
 	
 	//Subthread to annotate MSI status to each mutation (multiple cancer types)
-	private static class Subthread_MSI_Multiple extends ThreadEx{
+	private class Subthread_MSI_Multiple extends TaskEx{
 		int chr_index=-1;
-		int status=0;
-		ArrayList<Mutation>[][][] mutations=null;
+		MutationStore[][] mutations=null;
 		public void runEx() throws java.io.IOException {
-			status=1;
-			ArrayList<char[]> genome=read_genome(chr[chr_index]);
+			MsiContextMask mask=MsiContextMask.open(file_genome+chr[chr_index]+".fa");
 			for (int a=0;a<mutations.length;a++){
-				for (int i=0;i<mutations[a][chr_index].length;i++){
-					for(int j=0;j<mutations[a][chr_index][i].size();j++){
-						mutations[a][chr_index][i].get(j).msi=is_msi1(mutations[a][chr_index][i].get(j),genome);
-						mutations[a][chr_index][i].get(j).msi2=is_msi2(mutations[a][chr_index][i].get(j),genome);
-					}
-				}
+				annotate_msi(mutations[a][chr_index],mask);
 			}
 			
-			status=2;
 		}
 	}
 	
 	//count number of mutations per sample in a given interval 
-	public static int[] n_combi (ArrayList<Mutation> mutations){
+	public static int[] n_combi (MutationStore mutations, int bin){
 		ArrayList<Integer> count=new ArrayList<Integer>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).group==0){
-				Integer ii=table.get(mutations.get(i).donor);
+		Hashtable<Integer,Integer> table=new Hashtable<Integer,Integer>();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.group(i)==0){
+				Integer ii=table.get(mutations.donor(i));
 				if(ii==null){
 					ii=count.size();
-					table.put(mutations.get(i).donor, count.size());
+					table.put(mutations.donor(i), count.size());
 					count.add(0);
 				}
 				count.set(ii,count.get(ii)+1);
 			}
 		}
 		
-		int[] count2=new int[mutations.size()];
+		int[] count2=new int[mutations.end(bin)-mutations.start(bin)];
 		for (int i=0;i<count.size();i++){
 			count2[i]=count.get(i);
 		}
@@ -5462,16 +5020,16 @@ public class CombinedStatistics_100 {
 	}
 	
 	//count number of mutations per sample in a given interval (indels only)
-	public static int[] n_combi_indel (ArrayList<Mutation> mutations){
+	public static int[] n_combi_indel (MutationStore mutations, int bin){
 		ArrayList<Integer> count=new ArrayList<Integer>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		for (int i=0;i<mutations.size();i++){
-			if(mutations.get(i).ref.length()!=1||mutations.get(i).alt.length()!=1){
-				if(mutations.get(i).group==0){//||mutations.get(i).group==1
-					Integer ii=table.get(mutations.get(i).donor);
+		Hashtable<Integer,Integer> table=new Hashtable<Integer,Integer>();
+		for (int i=mutations.start(bin);i<mutations.end(bin);i++){
+			if(mutations.refLength(i)!=1||mutations.altLength(i)!=1){
+				if(mutations.group(i)==0){//||mutations.group(i)==1
+					Integer ii=table.get(mutations.donor(i));
 					if(ii==null){
 						ii=count.size();
-						table.put(mutations.get(i).donor, count.size());
+						table.put(mutations.donor(i), count.size());
 						count.add(0);
 					}
 					count.set(ii,count.get(ii)+1);
@@ -5480,58 +5038,19 @@ public class CombinedStatistics_100 {
 			
 		}
 		
-		int[] count2=new int[mutations.size()];
+		int[] count2=new int[mutations.end(bin)-mutations.start(bin)];
 		for (int i=0;i<count.size();i++){
 			count2[i]=count.get(i);
 		}
 		return count2;
 	}
 	
-	//function for simulation of positions of mutations
-	public static int select(ArrayList<int[]> interval, java.util.Random random){
-		int l=0;
-		for (int i=0;i<interval.size();i++){
-			l+=interval.get(i)[1]-interval.get(i)[0];
-		}
-		
-		int pos=-1;
-		int attempt=0;		
-		while(pos==-1&&attempt<20){
-			int r=(int)(random.nextDouble()*l);
-			pos=-1;
-			int ll=0;
-			for (int i=0;i<interval.size();i++){
-				if(ll<=r&&r<ll+interval.get(i)[1]-interval.get(i)[0]){
-					pos=(int)(random.nextDouble()*(interval.get(i)[1]-interval.get(i)[0])+interval.get(i)[0]);
-					break;
-				}
-				ll+=interval.get(i)[1]-interval.get(i)[0];
-			}
-			attempt++;
-		}
-		
-		return pos;
+	//read coverage files
+	public double[][] read_coverage() throws java.io.IOException {
+		return AnnotationCache.get("CombinedStatistics_100.coverage:"+file_coverage+":"+shift_mut, ()->load_coverage());
 	}
 	
-	//minimum distance of mutations between two samples
-	public static double dist(ArrayList<Integer> a, ArrayList<Integer> b){
-		double min=Double.MAX_VALUE;
-		for (int i=0;i<a.size();i++){
-			for (int j=0;j<b.size();j++){
-				if(Math.abs(a.get(i)-b.get(j))<min){
-					//if(Math.abs(a.get(i)-b.get(j))>0){	
-						min=Math.abs(a.get(i)-b.get(j));
-					//}
-					
-					
-				}
-			}
-		}
-		return min;
-	}
-	
-	//read coverage files
-	public static double[][] read_coverage() throws java.io.IOException {
+	private double[][] load_coverage() throws java.io.IOException {
 		double[][] coverage=new double[chr.length][];
 		{
 			double[][] coverage_n=new double[chr.length][];
@@ -5574,72 +5093,15 @@ public class CombinedStatistics_100 {
 	}
 	
 	
-	//class of Mutation with quality annotations
-	private static class Mutation{
-		int pos=-1;
-		String ref="";
-		String alt="";
-		int index_donor=-1;
-		boolean coding=false;
-		String donor="";
-		
-		int group=-1;
-		boolean exclude=false;
-	//	double[][] ratio=null;
-		boolean msi=false;
-		boolean msi2=false;
-		
-		public Mutation(int pos, String ref, String alt, String donor){
-			this.pos=pos;
-			this.ref=ref;
-			this.alt=alt;
-			this.donor=donor;
-		}
-	}
-	
-	//class of a mutated Position
-	private static class Position{
-		int pos=-1;
-		String ref="";
-		String ref_as="";
-		int as_num=-1;
-		String[] alt_as=new String[0];
-		
-		public Position(int pos, String ref, String ref_as, int as_num, String[] alt_as){
-			this.pos=pos;
-			this.ref=ref;
-			this.ref_as=ref_as;
-			this.as_num=as_num;
-			this.alt_as=alt_as;
-		}
-	}
-	
 	//read mutations of one cancer type and exclude low-quality mutations and problematic regions
-	public static void read_mutations (String entities) throws java.io.IOException {//ArrayList<Mutation>[][] 
+	public void read_mutations (String entities) throws java.io.IOException {
 		{
-			ArrayList<String> donors=new ArrayList<String>();;
-			
 			int a=index(entities,entities_all);
-			for (int b=0;b<files_donors[a].length;b++){
-				FileInputStream in=new FileInputStream(files_donors[a][b]);
-				BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-				//input.readLine();
-				String s="";
-				while((s=input.readLine())!=null){
-					String[] t=s.split("	");
-					donors.add(t[0]);	
-				}
-				input.close();
-			}
-			
-			ArrayList<Mutation>[][] positions=new ArrayList[donors.size()][chr.length];
-			
-			for (int i=0;i<positions.length;i++){
-				for (int j=0;j<chr.length;j++){
-					positions[i][j]=new ArrayList<Mutation>();
-				}
-			}
-			
+			DonorDictionary donors=DonorDictionary.read(files_donors[a]);
+
+			//NB. the mutations of each chromosome are stored with a bin for each donor until they are binned by the position
+			MutationStore[] positions=new MutationStore[chr.length];
+
 			System.out.println("A");
 			SubthreadReadSingle[] threads_read=new SubthreadReadSingle[chr.length];
 			for (int chr_index=0;chr_index<chr.length;chr_index++){
@@ -5649,23 +5111,9 @@ public class CombinedStatistics_100 {
 				threads_read[chr_index].donors=donors;
 				threads_read[chr_index].file_mut_snv=files_mut_snv[a][chr_index];
 				threads_read[chr_index].file_mut_indel=files_mut_indel[a][chr_index];
-				threads_read[chr_index].start();
 			}
 			
-			boolean all_done=false;
-			while(!all_done){
-				all_done=true;
-				for (int i=0;i<threads_read.length;i++){
-					if(threads_read[i].status!=2){
-						all_done=false;
-					}
-				}
-				try{
-				Thread.sleep(250);
-				}
-				catch(java.lang.InterruptedException e){
-				}
-			}
+			ThreadPool.invokeAll(threads_read);
 			System.out.println("A");
 			
 				
@@ -5707,54 +5155,34 @@ public class CombinedStatistics_100 {
 				
 			}
 			
-			
-			Comparator<Mutation> comp_mut=(Mutation m1, Mutation m2)->{
-				return new Integer(m1.pos).compareTo(m2.pos);
-			};
-			
-			SubthreadKataegisSingle[] threads_kataegis=new SubthreadKataegisSingle[chr.length];
+
+			//NB. the kataegis subthreads put the mutations of each donor in order of the position, and mark the clustered ones in that order
+			int[][] order=new int[chr.length][];
+			boolean[][] kataegis=new boolean[chr.length][];
+			ArrayList<SubthreadKataegis> threads_kataegis=new ArrayList<SubthreadKataegis>();
 			for (int chr_index=0;chr_index<chr.length;chr_index++){
-				threads_kataegis[chr_index]=new SubthreadKataegisSingle();
-				threads_kataegis[chr_index].chr_index=chr_index;
-				threads_kataegis[chr_index].positions=positions;
-				threads_kataegis[chr_index].start();
-			}
-			
-			all_done=false;
-			while(!all_done){
-				all_done=true;
-				for (int i=0;i<threads_kataegis.length;i++){
-					if(threads_kataegis[i].status!=2){
-						all_done=false;
+				order[chr_index]=new int[positions[chr_index].size()];
+				kataegis[chr_index]=new boolean[positions[chr_index].size()];
+				for (int i=0;i<positions[chr_index].bins();i++){
+					if(positions[chr_index].start(i)<positions[chr_index].end(i)){
+						SubthreadKataegis thread=new SubthreadKataegis();
+						thread.positions=positions[chr_index];
+						thread.donor=i;
+						thread.order=order[chr_index];
+						thread.kataegis=kataegis[chr_index];
+						threads_kataegis.add(thread);
 					}
 				}
-				try{
-				Thread.sleep(250);
-				}
-				catch(java.lang.InterruptedException e){
-				}
 			}
+
+			ThreadPool.invokeAll(threads_kataegis.toArray(new SubthreadKataegis[threads_kataegis.size()]));
 			System.out.println("A");
-			
-		
+
+
+			MutationStore[] mutations=new MutationStore[chr.length];
 			for (int j=0;j<chr.length;j++){
-				mutations[j]=new ArrayList[1+(chr_length[j]-shift_mut)/10000];
-				
-				for (int k=0;k<mutations[j].length;k++){
-					mutations[j][k]=new ArrayList<Mutation>();
-				}
-			}
-		
-			for (int j=0;j<positions.length;j++){
-				
-				for (int k=0;k<positions[j].length;k++){//chr
-					for (int l=0;l<positions[j][k].size();l++){
-						if(positions[j][k].get(l).pos>=shift_mut){
-							mutations[k][(positions[j][k].get(l).pos-shift_mut)/10000].add(positions[j][k].get(l));
-							
-						}
-					}
-				}
+				mutations[j]=positions[j].bin(order[j],kataegis[j],shift_mut,10000,1+(chr_length[j]-shift_mut)/10000);
+				positions[j]=null;
 			}
 			System.out.println("A");
 			
@@ -5763,22 +5191,9 @@ public class CombinedStatistics_100 {
 			for (int chr_index=0;chr_index<chr.length;chr_index++){
 				threads_align[chr_index]=new SubthreadAnnotateAlignSingle();
 				threads_align[chr_index].chr_index=chr_index;
-				threads_align[chr_index].start();
-			}
-			all_done=false;
-			while(!all_done){
-				all_done=true;
-				for (int i=0;i<threads_align.length;i++){
-					if(threads_align[i].status!=2){
-						all_done=false;
-					}
-				}
-				try{
-				Thread.sleep(250);
-				}
-				catch(java.lang.InterruptedException e){
-				}
+				threads_align[chr_index].mutations=mutations;
 			}
+			ThreadPool.invokeAll(threads_align);
 			System.out.println("A");
 			
 			
@@ -5789,140 +5204,59 @@ public class CombinedStatistics_100 {
 				threads_msi[chr_index]=new Subthread_MSI();
 				threads_msi[chr_index].chr_index=chr_index;
 				threads_msi[chr_index].mutations=mutations;
-				threads_msi[chr_index].start();
 			}
 			System.out.println("run msi")	;
 			
-			all_done=false;
-			while(!all_done){
-				all_done=true;
-				for (int i=0;i<threads_msi.length;i++){
-					if(threads_msi[i].status!=2){
-						all_done=false;
-					}
-				}
-				try{
-				Thread.sleep(250);
-				}
-				catch(java.lang.InterruptedException e){
-				}
-			}
+			ThreadPool.invokeAll(threads_msi);
 			System.out.println("A");
 			System.out.println("msi done")	;
 			
 			
-			remove_bad_msi_samples();
-			
-			
-			for (int i=0;i<mutations.length;i++){
-				for (int j=0;j<mutations[i].length;j++){
-					for (int k=mutations[i][j].size()-1;k>=0;k--){
-						if(mutations[i][j].get(k).exclude){
-							mutations[i][j].remove(k);
-						}
-					}
-				}
-			}
+			mutations=remove_bad_msi_samples(mutations,donors);
+
+			this.mutations=mutations;
 			
 		}
 		//return pos_snv;
 	}
 	
-	//remove samples with a high fraction of mutations in MSI-related contexts
-	public static void remove_bad_msi_samples(){
-		ArrayList<String> donors=new ArrayList<String>();
-		Hashtable<String,Integer> table=new Hashtable<String,Integer>();
-		ArrayList<int[]> counts_bad=new ArrayList<int[]>();
-		ArrayList<int[]> counts_msi=new ArrayList<int[]>();
-		
+	//remove samples with a high fraction of mutations in MSI-related contexts, together with the mutations in MSI contexts and the excluded mutations
+	public MutationStore[] remove_bad_msi_samples(MutationStore[] mutations, DonorDictionary donors){
+		MutationFilter filter=new MutationFilter(donors.size());
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
+			for (int j=0;j<mutations[i].bins();j++){
 				if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])){
-					for (int k=0;k<mutations[i][j].size();k++){
-						Integer ii=table.get(mutations[i][j].get(k).donor);
-						if(ii==null){
-							ii=donors.size();
-							table.put(mutations[i][j].get(k).donor, ii);
-							donors.add(mutations[i][j].get(k).donor);
-							counts_bad.add(new int[]{0,0});
-							counts_msi.add(new int[]{0,0});
-						}
-						counts_bad.get(ii)[0]++;
-						if(mutations[i][j].get(k).group>=1){//>=2
-							counts_bad.get(ii)[1]++;
-						}
-						counts_msi.get(ii)[0]++;
-						if(mutations[i][j].get(k).msi){
-							counts_msi.get(ii)[1]++;
-						}
-
+					for (int k=mutations[i].start(j);k<mutations[i].end(j);k++){
+						filter.count(mutations[i].donor(k),mutations[i].group(k)>=1,mutations[i].msi(k));//>=2
 					}
 				}
 			}
 		}
-		
-		Hashtable<String,Integer> table_bad_donors=new Hashtable<String,Integer>();
-		ArrayList<String> bad_donors=new ArrayList<String>();
-		for (int i=0;i<donors.size();i++){
-			if((double)(counts_bad.get(i)[1])/(double)(counts_bad.get(i)[0])>0.25){
-				table_bad_donors.put(donors.get(i),bad_donors.size());
-				bad_donors.add(donors.get(i));
-			}
-		}
-		
-		Hashtable<String,Integer> table_msi_donors=new Hashtable<String,Integer>();
-		ArrayList<String> msi_donors=new ArrayList<String>();
-		for (int i=0;i<donors.size();i++){
-			if((double)(counts_msi.get(i)[1])/(double)(counts_msi.get(i)[0])>0.2){
-				table_msi_donors.put(donors.get(i),msi_donors.size());
-				msi_donors.add(donors.get(i));
-			}
-		}
-		
-		
+		filter.dropDonors(0.25,0.2);
+
+		//NB. everything is removed in one pass, compacting each store once
+		MutationStore[] kept=new MutationStore[mutations.length];
 		for (int i=0;i<mutations.length;i++){
-			for (int j=0;j<mutations[i].length;j++){
-				for (int k=mutations[i][j].size()-1;k>=0;k--){
-					if(table_bad_donors.get(mutations[i][j].get(k).donor)!=null||table_msi_donors.get(mutations[i][j].get(k).donor)!=null||mutations[i][j].get(k).msi||mutations[i][j].get(k).msi2){
-						mutations[i][j].remove(k);
-					}
-				}
+			boolean[] removed=new boolean[mutations[i].size()];
+			for (int k=0;k<removed.length;k++){
+				removed[k]=filter.dropped(mutations[i].donor(k))||mutations[i].msi(k)||mutations[i].msi2(k)||mutations[i].exclude(k);
 			}
+			kept[i]=mutations[i].remove(removed);
+			mutations[i]=null;
 		}
-		
+		return kept;
 	}
 
 	//read mutations of multiple cancer types and exclude low-quality mutations and problematic regions
-	public static void read_mutations_entitites (String[] entity) throws java.io.IOException { 
+	public void read_mutations_entitites (String[] entity) throws java.io.IOException { 
 		{
 		
 			
-			ArrayList<String>[] donors=new ArrayList[entity.length];
-			ArrayList<Mutation>[][][] positions=new ArrayList[entity.length][][];
-					
+			DonorDictionary[] donors=new DonorDictionary[entity.length];
+			MutationStore[][] positions=new MutationStore[entity.length][chr.length];
+
 			for (int a=0;a<entity.length;a++){
-				donors[a]=new ArrayList<String>();
-				
-				for (int b=0;b<files_donors[a].length;b++){
-					FileInputStream in=new FileInputStream(files_donors[a][b]);
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					//input.readLine();
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						donors[a].add(t[0]);	
-					}
-					input.close();
-				}
-				
-				
-				positions[a]=new ArrayList[donors[a].size()][chr.length];
-				
-				for (int i=0;i<positions[a].length;i++){
-					for (int j=0;j<chr.length;j++){
-						positions[a][i][j]=new ArrayList<Mutation>();
-					}
-				}
+				donors[a]=DonorDictionary.read(files_donors[a]);
 				System.out.println(entity[a]);
 				SubthreadRead[] threads_read=new SubthreadRead[chr.length];
 				for (int chr_index=0;chr_index<chr.length;chr_index++){
@@ -5934,23 +5268,9 @@ public class CombinedStatistics_100 {
 					threads_read[chr_index].donors=donors;
 					threads_read[chr_index].file_mut_snv=files_mut_snv[a][chr_index];
 					threads_read[chr_index].file_mut_indel=files_mut_indel[a][chr_index];
-					threads_read[chr_index].start();
 				}
 				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_read.length;i++){
-						if(threads_read[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
-				}
+				ThreadPool.invokeAll(threads_read);
 				
 			}
 			{
@@ -5975,31 +5295,27 @@ public class CombinedStatistics_100 {
 			}
 			
 			
+			int[][][] order=new int[entity.length][chr.length][];
+			boolean[][][] kataegis=new boolean[entity.length][chr.length][];
 			for (int a=0;a<entity.length;a++){
 				System.out.println(entity[a]);
-				SubthreadKataegis[] threads_kataegis=new SubthreadKataegis[chr.length];
+				ArrayList<SubthreadKataegis> threads_kataegis=new ArrayList<SubthreadKataegis>();
 				for (int chr_index=0;chr_index<chr.length;chr_index++){
-					threads_kataegis[chr_index]=new SubthreadKataegis();
-					threads_kataegis[chr_index].chr_index=chr_index;
-					threads_kataegis[chr_index].a=a;
-					threads_kataegis[chr_index].positions=positions;
-					threads_kataegis[chr_index].start();
-				}
-				
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_kataegis.length;i++){
-						if(threads_kataegis[i].status!=2){
-							all_done=false;
+					order[a][chr_index]=new int[positions[a][chr_index].size()];
+					kataegis[a][chr_index]=new boolean[positions[a][chr_index].size()];
+					for (int i=0;i<positions[a][chr_index].bins();i++){
+						if(positions[a][chr_index].start(i)<positions[a][chr_index].end(i)){
+							SubthreadKataegis thread=new SubthreadKataegis();
+							thread.positions=positions[a][chr_index];
+							thread.donor=i;
+							thread.order=order[a][chr_index];
+							thread.kataegis=kataegis[a][chr_index];
+							threads_kataegis.add(thread);
 						}
 					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
 				}
+				
+				ThreadPool.invokeAll(threads_kataegis.toArray(new SubthreadKataegis[threads_kataegis.size()]));
 			}
 			
 			{
@@ -6008,50 +5324,24 @@ public class CombinedStatistics_100 {
 					threads_coding[chr_index]=new SubthreadAnnotateCoding();
 					threads_coding[chr_index].chr_index=chr_index;
 					threads_coding[chr_index].positions=positions;
-					threads_coding[chr_index].start();
-				}
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_coding.length;i++){
-						if(threads_coding[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
 				}
+				ThreadPool.invokeAll(threads_coding);
 			}
 			System.out.println("Coding Annotation done");
 			
 			
-			ArrayList<Mutation>[][][] mutations_entities=new ArrayList[entity.length][chr.length][];
+			MutationStore[][] mutations_entities=new MutationStore[entity.length][chr.length];
 			{
 				SubthreadRestructure[] threads_restructure=new SubthreadRestructure[entity.length];
 				for (int a=0;a<entity.length;a++){
 					threads_restructure[a]=new SubthreadRestructure();
 					threads_restructure[a].mutations_entities=mutations_entities;
 					threads_restructure[a].positions=positions;
+					threads_restructure[a].order=order;
+					threads_restructure[a].kataegis=kataegis;
 					threads_restructure[a].a=a;
-					threads_restructure[a].start();
-				}
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_restructure.length;i++){
-						if(threads_restructure[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
 				}
+				ThreadPool.invokeAll(threads_restructure);
 			}
 			
 			
@@ -6063,22 +5353,8 @@ public class CombinedStatistics_100 {
 					threads_align[chr_index]=new SubthreadAnnotateAlign();
 					threads_align[chr_index].chr_index=chr_index;
 					threads_align[chr_index].mutations_entities=mutations_entities;
-					threads_align[chr_index].start();
-				}
-				boolean all_done=false;
-				while(!all_done){
-					all_done=true;
-					for (int i=0;i<threads_align.length;i++){
-						if(threads_align[i].status!=2){
-							all_done=false;
-						}
-					}
-					try{
-					Thread.sleep(250);
-					}
-					catch(java.lang.InterruptedException e){
-					}
 				}
+				ThreadPool.invokeAll(threads_align);
 			}
 			
 			System.out.println("Align annotation done");
@@ -6089,99 +5365,13 @@ public class CombinedStatistics_100 {
 				threads_msi[i]=new Subthread_MSI_Multiple();
 				threads_msi[i].chr_index=i;
 				threads_msi[i].mutations=mutations_entities;
-				threads_msi[i].start();
 			}
 			
-			boolean all_done=false;
-			while(!all_done){
-				all_done=true;
-				for (int i=0;i<threads_msi.length;i++){
-					if(threads_msi[i].status!=2){
-						all_done=false;
-					}
-				}
-				try{
-				Thread.sleep(250);
-				}
-				catch(java.lang.InterruptedException e){
-				}
-			}
+			ThreadPool.invokeAll(threads_msi);
 			
 			
 			for (int l=0;l<entity.length;l++){
-				
-				ArrayList<String> donors_entity=new ArrayList<String>();
-				Hashtable<String,Integer> table_entity=new Hashtable<String,Integer>();
-				ArrayList<int[]> counts_bad=new ArrayList<int[]>();
-				ArrayList<int[]> counts_msi=new ArrayList<int[]>();
-				
-				for (int i=0;i<mutations_entities[l].length;i++){
-					for (int j=0;j<mutations_entities[l][i].length;j++){
-						if(low(chr[i])<=coverage[i][j]&&coverage[i][j]<high(chr[i])){
-							for (int k=0;k<mutations_entities[l][i][j].size();k++){
-								Integer ii=table_entity.get(mutations_entities[l][i][j].get(k).donor);
-								if(ii==null){
-									ii=donors_entity.size();
-									table_entity.put(mutations_entities[l][i][j].get(k).donor, ii);
-									donors_entity.add(mutations_entities[l][i][j].get(k).donor);
-									counts_bad.add(new int[]{0,0});
-									counts_msi.add(new int[]{0,0});
-								}
-								counts_bad.get(ii)[0]++;
-								if(mutations_entities[l][i][j].get(k).group>=1){//>=2
-									counts_bad.get(ii)[1]++;
-								}
-								
-								counts_msi.get(ii)[0]++;
-								if(mutations_entities[l][i][j].get(k).msi){
-									counts_msi.get(ii)[1]++;
-								}
-
-							}
-						}
-					}
-				}
-				
-				
-				Hashtable<String,Integer> table_bad_donor_entity=new Hashtable<String,Integer>();
-				ArrayList<String> bad_donors_entity=new ArrayList<String>();
-				Hashtable<String,Integer> table_msi_donors=new Hashtable<String,Integer>();
-				ArrayList<String> msi_donors=new ArrayList<String>();
-				for (int i=0;i<donors_entity.size();i++){
-					if((double)(counts_bad.get(i)[1])/(double)(counts_bad.get(i)[0])>0.25){
-						table_bad_donor_entity.put(donors_entity.get(i),bad_donors_entity.size());
-						bad_donors_entity.add(donors_entity.get(i));
-					}
-					if((double)(counts_msi.get(i)[1])/(double)(counts_msi.get(i)[0])>0.2){
-						table_msi_donors.put(donors_entity.get(i),msi_donors.size());
-						msi_donors.add(donors_entity.get(i));
-					}
-				}
-				
-				for (int i=0;i<mutations_entities[l].length;i++){
-					for (int j=0;j<mutations_entities[l][i].length;j++){
-						for (int k=mutations_entities[l][i][j].size()-1;k>=0;k--){
-							if(table_bad_donor_entity.get(mutations_entities[l][i][j].get(k).donor)!=null||table_msi_donors.get(mutations_entities[l][i][j].get(k).donor)!=null||mutations_entities[l][i][j].get(k).msi||mutations_entities[l][i][j].get(k).msi2){
-								mutations_entities[l][i][j].remove(k);
-							}
-						}
-					}
-				}
-				
-				
-			}
-			
-
-			for (int a=0;a<mutations_entities.length;a++){
-				for (int i=0;i<mutations_entities[a].length;i++){
-					for (int j=0;j<mutations_entities[a][i].length;j++){
-						for (int k=mutations_entities[a][i][j].size()-1;k>=0;k--){
-							if(mutations_entities[a][i][j].get(k).exclude){
-								mutations_entities[a][i][j].remove(k);
-							}
-						}
-					}
-				}
+				mutations_entities[l]=remove_bad_msi_samples(mutations_entities[l],donors[l]);
 			}
 			
 			int[][][][] n_indel_quality2=new int[entity.length][chr.length][][];
@@ -6197,15 +5387,15 @@ public class CombinedStatistics_100 {
 			
 			for (int i=0;i<mutations_entities.length;i++){
 				for (int j=0;j<mutations_entities[0].length;j++){
-					for (int k=0;k<mutations_entities[0][j].length;k++){
-					
-						for(int l=0;l<mutations_entities[i][j][k].size();l++){
+					for (int k=0;k<mutations_entities[i][j].bins();k++){
+
+						for(int l=mutations_entities[i][j].start(k);l<mutations_entities[i][j].end(k);l++){
 							boolean snv=false;
-							if(mutations_entities[i][j][k].get(l).ref.length()==1&&mutations_entities[i][j][k].get(l).alt.length()==1){
+							if(mutations_entities[i][j].refLength(l)==1&&mutations_entities[i][j].altLength(l)==1){
 								snv=true;
 							}
 							boolean good_quality=false;
-							if(mutations_entities[i][j][k].get(l).group==0){//||mutations_entities[i][j][k].get(l).group==1
+							if(mutations_entities[i][j].group(l)==0){//||mutations_entities[i][j].group(l)==1
 								good_quality=true;
 							}
 							
@@ -6216,12 +5406,12 @@ public class CombinedStatistics_100 {
 							else{
 
 								if(good_quality){
-									n_indel_quality2[i][j][k][(mutations_entities[i][j][k].get(l).pos-k*10000-shift_mut)/1000]++;	
+									n_indel_quality2[i][j][k][(mutations_entities[i][j].pos(l)-k*10000-shift_mut)/1000]++;	
 								}
 							}
 
 							if(good_quality){
-								n_quality2[i][j][k][(mutations_entities[i][j][k].get(l).pos-k*10000-shift_mut)/1000]++;	
+								n_quality2[i][j][k][(mutations_entities[i][j].pos(l)-k*10000-shift_mut)/1000]++;	
 							}
 							
 						}
@@ -6240,7 +5430,7 @@ public class CombinedStatistics_100 {
 	}
 	
 	//write the mutation counts of multiple cancer types
-	public static void output(String file_out, int[][][][] n,String[] entities) throws java.io.IOException {
+	public void output(String file_out, int[][][][] n,String[] entities) throws java.io.IOException {
 		{
 			java.io.FileOutputStream out=new java.io.FileOutputStream(file_out);
 			BufferedWriter output= new BufferedWriter(new java.io.OutputStreamWriter(ZipFilter.filterOutputStream(out, file_out)));
@@ -6309,12 +5499,50 @@ public class CombinedStatistics_100 {
 		}
 	}
 	
+	//exclusion regions of a chromosome to join with the mutations, a mutation is excluded if within 100bp after an excluded position of the same interval
+	IntervalJoin exclude_join(int chr_index){
+		IntervalJoin join_exclude=new IntervalJoin();
+		for (int j=0;j<exclude[chr_index].length;j++){
+			for (int k=0;k<exclude[chr_index][j].size();k++){
+				int x=exclude[chr_index][j].get(k);
+				join_exclude.add(x,Math.min(x+100,(j+1)*10000+shift_mut-1),1);
+			}
+		}
+		return join_exclude;
+	}
+	
+	//annotate the group of the last alignability interval containing each mutation, and whether it is excluded, in one sweep over the positions
+	static void annotate_align(java.util.List<MutationStore> stores, IntervalJoin join_group, IntervalJoin join_exclude){
+		int n=0;
+		for (int j=0;j<stores.size();j++){
+			n+=stores.get(j).size();
+		}
+		int[] pos=new int[n];
+		for (int j=0, i=0;j<stores.size();j++){
+			for (int l=0;l<stores.get(j).size();l++){
+				pos[i++]=stores.get(j).pos(l);
+			}
+		}
+		
+		int[] group=join_group.join(pos,Integer.MIN_VALUE);
+		int[] exclude=join_exclude.join(pos,0);
+		for (int j=0, i=0;j<stores.size();j++){
+			for (int l=0;l<stores.get(j).size();l++, i++){
+				if(group[i]!=Integer.MIN_VALUE){
+					stores.get(j).setGroup(l,group[i]);
+				}
+				if(exclude[i]!=0){
+					stores.get(j).setExclude(l,true);
+				}
+			}
+		}
+	}
+	
 	//Subthread to annotate 36mer based alignment scores for mutations of a single cancer type
-	private static class SubthreadAnnotateAlignSingle extends ThreadEx{
+	private class SubthreadAnnotateAlignSingle extends TaskEx{
 		int chr_index=-1;
-		int status=0;
+		MutationStore[] mutations=null;
 		public void runEx() throws java.io.IOException {
-			status=1;
 			{
 				interval_align[chr_index]=new ArrayList[1+(chr_length[chr_index]-shift_mut)/10000];
 				alignability[chr_index]=new double[1+(chr_length[chr_index]-shift_mut)/10000];
@@ -6324,45 +5552,27 @@ public class CombinedStatistics_100 {
 					interval_align[chr_index][k]=new ArrayList<int[]>();
 				}
 				
+				//NB. the groups and the exclusion are joined with the mutations in one sweep afterwards
+				IntervalJoin join_group=new IntervalJoin();
 				for (int j=0;j<1+(chr_length[chr_index]-shift_mut)/1000000;j++){
-					java.io.InputStream in=ZipOverlay.fileInputStream(file_dichotomous+chr[chr_index]+"_"+j+".txt");
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						if(Integer.parseInt(t[0])>=shift_mut){
-							for (int kk=(Integer.parseInt(t[0])+18-shift_mut)/10000;kk<=(Integer.parseInt(t[1])+18-shift_mut)/10000;kk++){
-								for (int l=0;l<mutations[chr_index][kk].size();l++){
-									if(Integer.parseInt(t[0])+18<=mutations[chr_index][kk].get(l).pos&&mutations[chr_index][kk].get(l).pos<=Integer.parseInt(t[1])+18){
-										mutations[chr_index][kk].get(l).group=Integer.parseInt(t[2]);
-									}
-								}
-								int overlap=Math.min((kk+1)*10000+shift_mut,Integer.parseInt(t[1])+18)-Math.max(kk*10000+shift_mut,Integer.parseInt(t[0])+18);
-								if(overlap>0){
-									if(Integer.parseInt(t[2])==0){//||Integer.parseInt(t[2])==1
-										interval_align[chr_index][kk].add(new int[]{Math.max(kk*10000+shift_mut,Integer.parseInt(t[0])+18),Math.min((kk+1)*10000+shift_mut,Integer.parseInt(t[1])+18)});
-//										alignability[chr_index][kk]+=(double)(Math.min((kk+1)*10000,Integer.parseInt(t[1])+shift)-Math.max(kk*10000,Integer.parseInt(t[0])+shift))/10000.0;
+					int[][] intervals=read_dichotomous(chr_index,j);
+					for (int ll=0;ll<intervals.length;ll++){
+						int[] t=intervals[ll];
+						if(t[0]>=shift_mut){
+							join_group.add(t[0]+18,t[1]+18,t[2]);
+							if(t[2]==0){//||t[2]==1
+								for (int kk=Math.max((t[0]+18-shift_mut)/10000,0);kk<=(t[1]+18-shift_mut)/10000;kk++){
+									int overlap=Math.min((kk+1)*10000+shift_mut,t[1]+18)-Math.max(kk*10000+shift_mut,t[0]+18);
+									if(overlap>0){
+										interval_align[chr_index][kk].add(new int[]{Math.max(kk*10000+shift_mut,t[0]+18),Math.min((kk+1)*10000+shift_mut,t[1]+18)});
 									}
 								}
-								
-								
 							}
 						}
-						
-						
 					}
-					input.close();
 				}
 				
-				for (int j=0;j<mutations[chr_index].length;j++){
-					for (int k=0;k<exclude[chr_index][j].size();k++){
-						for (int l=0;l<mutations[chr_index][j].size();l++){
-							if(exclude[chr_index][j].get(k)<=mutations[chr_index][j].get(l).pos&&mutations[chr_index][j].get(l).pos<=exclude[chr_index][j].get(k)+100){
-								mutations[chr_index][j].get(l).exclude=true;
-							}
-						}
-					}
-				}
+				annotate_align(java.util.Collections.singletonList(mutations[chr_index]),join_group,exclude_join(chr_index));
 				
 				ArrayList<int[]>[] exclude_comp=new ArrayList[1+(chr_length[chr_index]-shift_mut)/10000];
 				for (int i=0;i<exclude_comp.length;i++){
@@ -6396,36 +5606,39 @@ public class CombinedStatistics_100 {
 				};
 				
 				for (int k=0;k<interval_align[chr_index].length;k++){
+					//NB. both are in order of the position, exclude_comp without overlaps
 					ArrayList<int[]> new_align=new ArrayList<int[]>();
 					for (int l=0;l<interval_align[chr_index][k].size();l++){
-						for (int m=0;m<exclude_comp[k].size();m++){
-							int[] a={Math.max(exclude_comp[k].get(m)[0],interval_align[chr_index][k].get(l)[0]),Math.min(exclude_comp[k].get(m)[1],interval_align[chr_index][k].get(l)[1])};
+						int[] x=interval_align[chr_index][k].get(l);
+						int m_lo=0, m_hi=exclude_comp[k].size();
+						while(m_lo<m_hi){
+							int m=(m_lo+m_hi)>>>1;
+							if(exclude_comp[k].get(m)[1]<=x[0]){
+								m_lo=m+1;
+							}
+							else{
+								m_hi=m;
+							}
+						}
+						for (int m=m_lo;m<exclude_comp[k].size()&&exclude_comp[k].get(m)[0]<x[1];m++){
+							int[] a={Math.max(exclude_comp[k].get(m)[0],x[0]),Math.min(exclude_comp[k].get(m)[1],x[1])};
 							if(a[1]>a[0]){
 								new_align.add(a);
 							}
 						}
 					}
 					Collections.sort(new_align,comp_int);
+					
 					interval_align[chr_index][k]=new_align;
-				}
-				
-				for (int k=0;k<interval_align[chr_index].length;k++){
+					
 					for (int l=0;l<interval_align[chr_index][k].size();l++){
 						alignability[chr_index][k]+=(double)(interval_align[chr_index][k].get(l)[1]-interval_align[chr_index][k].get(l)[0])/10000.0;
-					}
-				}
-				for (int k=0;k<interval_align[chr_index].length;k++){
-					for (int l=0;l<interval_align[chr_index][k].size();l++){
 						for (int m=(interval_align[chr_index][k].get(l)[0]-shift_mut)/1000;m<=(interval_align[chr_index][k].get(l)[1]-shift_mut)/1000;m++){
 							int a=Math.min((m+1)*1000+shift_mut, interval_align[chr_index][k].get(l)[1])-Math.max(m*1000+shift_mut, interval_align[chr_index][k].get(l)[0]);
 							if(a>0){
 								alignability_fine[chr_index][m]+=(double)(a)/1000.0;
 							}
 						}
-					}
-				}
-				for (int k=0;k<interval_align[chr_index].length;k++){
-					for (int l=0;l<interval_align[chr_index][k].size();l++){
 						for (int m=(interval_align[chr_index][k].get(l)[0]-shift_mut)/100000;m<=(interval_align[chr_index][k].get(l)[1]-shift_mut)/100000;m++){
 							int a=Math.min((m+1)*100000+shift_mut, interval_align[chr_index][k].get(l)[1])-Math.max(m*100000+shift_mut, interval_align[chr_index][k].get(l)[0]);
 							if(a>0){
@@ -6434,414 +5647,193 @@ public class CombinedStatistics_100 {
 						}
 					}
 				}
-								
+				
 			}
-			status=2;
 		}
 		
 	}
 	
 	//Subthread to annotate 36mer based alignment scores for mutations of multiple cancer types
-	private static class SubthreadAnnotateAlign extends ThreadEx{
+	private class SubthreadAnnotateAlign extends TaskEx{
 		
 		int chr_index=-1;
-		ArrayList<Mutation>[][][] mutations_entities=null;
-		int status=0;
+		MutationStore[][] mutations_entities=null;
 		
 		public void runEx() throws java.io.IOException {
-			status=1;
 			{
+				IntervalJoin join_group=new IntervalJoin();
 				for (int j=0;j<1+(chr_length[chr_index]-shift_mut)/1000000;j++){
-					java.io.InputStream in=ZipOverlay.fileInputStream(file_dichotomous+chr[chr_index]+"_"+j+".txt");
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						if(Integer.parseInt(t[0])>=shift_mut){
-							for (int kk=(Integer.parseInt(t[0])+18-shift_mut)/10000;kk<=(Integer.parseInt(t[1])+18-shift_mut)/10000;kk++){
-								for (int a=0;a<mutations_entities.length;a++){
-									for (int l=0;l<mutations_entities[a][chr_index][kk].size();l++){
-										if(Integer.parseInt(t[0])+18<=mutations_entities[a][chr_index][kk].get(l).pos&&mutations_entities[a][chr_index][kk].get(l).pos<=Integer.parseInt(t[1])+18){
-											mutations_entities[a][chr_index][kk].get(l).group=Integer.parseInt(t[2]);
-										}
-									}
-								}
-							}
+					int[][] intervals=read_dichotomous(chr_index,j);
+					for (int ll=0;ll<intervals.length;ll++){
+						int[] t=intervals[ll];
+						if(t[0]>=shift_mut){
+							join_group.add(t[0]+18,t[1]+18,t[2]);
 						}
-						
 					}
-					input.close();
 				}
 				
+				ArrayList<MutationStore> stores=new ArrayList<MutationStore>();
 				for (int a=0;a<mutations_entities.length;a++){
-					for (int j=0;j<mutations_entities[a][chr_index].length;j++){
-						for (int k=0;k<exclude[chr_index][j].size();k++){
-							for (int l=0;l<mutations_entities[a][chr_index][j].size();l++){
-								if(exclude[chr_index][j].get(k)<=mutations_entities[a][chr_index][j].get(l).pos&&mutations_entities[a][chr_index][j].get(l).pos<=exclude[chr_index][j].get(k)+100){
-									mutations_entities[a][chr_index][j].get(l).exclude=true;
-								}
-							}
-						}
-					}
+					stores.add(mutations_entities[a][chr_index]);
 				}
-				
-				
-				
+				annotate_align(stores,join_group,exclude_join(chr_index));
 			}
-			status=2;
 		}
 	}
 	
 	//Subthread to restructure mutations from samples to intervals of the genome
-	private static class SubthreadRestructure extends Thread{
-		ArrayList<Mutation>[][][] mutations_entities=null;
-		ArrayList<Mutation>[][][] positions=null;
+	private class SubthreadRestructure extends TaskEx{
+		MutationStore[][] mutations_entities=null;
+		MutationStore[][] positions=null;
+		int[][][] order=null;
+		boolean[][][] kataegis=null;
 		int a=-1;
-		int status=0;
-		public void run(){
-			status=1;
+		public void runEx(){ 
 			for (int j=0;j<chr.length;j++){
-				mutations_entities[a][j]=new ArrayList[1+(chr_length[j]-shift_mut)/10000];
-				for (int k=0;k<mutations_entities[a][j].length;k++){
-					mutations_entities[a][j][k]=new ArrayList<Mutation>();
-				}
-			}
-		
-			for (int j=0;j<positions[a].length;j++){
-				for (int k=0;k<positions[a][j].length;k++){//chr
-					for (int l=0;l<positions[a][j][k].size();l++){
-						if(positions[a][j][k].get(l).pos>=shift_mut){
-							mutations_entities[a][k][(positions[a][j][k].get(l).pos-shift_mut)/10000].add(positions[a][j][k].get(l));
-							
-						}
-						
-					}
-				}
+				mutations_entities[a][j]=positions[a][j].bin(order[a][j],kataegis[a][j],shift_mut,10000,1+(chr_length[j]-shift_mut)/10000);
+				positions[a][j]=null;
 			}
-			status=2;
 		}
 	}
 	
 	//Subthread to annotate which mutations are coding
-	private static class SubthreadAnnotateCoding extends ThreadEx{
+	private class SubthreadAnnotateCoding extends TaskEx{
 		int chr_index=-1;
-		ArrayList<Mutation>[][][] positions=null;
-		int status=0;
+		MutationStore[][] positions=null;
 		public void runEx() throws java.io.IOException {
-			status=1;
 			{
-				Hashtable<Integer,Integer> table_code=new Hashtable<Integer,Integer>();
-				java.io.InputStream in=ZipOverlay.fileInputStream(file_as_annotation+chr[chr_index]+".txt");
-				BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-				input.readLine();
-				String s="";
-				while((s=input.readLine())!=null){
-					String[] t=s.split("	");
-					if(t.length==7){
-						int syn=0;
-						if(t[4].equals(t[2])){
-							syn++;
-						}
-						if(t[5].equals(t[2])){
-							syn++;
-						}
-						if(t[6].equals(t[2])){
-							syn++;
-						}
-						table_code.put(Integer.parseInt(t[0]),syn);
-					}
-				}
-				input.close();
+				ASIndex as_index=read_as_index(chr_index);
 				
 				for (int a=0;a<positions.length;a++){
-					for (int i=0;i<positions[a].length;i++){
-						for (int j=0;j<positions[a][i][chr_index].size();j++){
-							positions[a][i][chr_index].get(j).coding=table_code.get(positions[a][i][chr_index].get(j).pos)!=null;
-						}
+					for (int j=0;j<positions[a][chr_index].size();j++){
+						positions[a][chr_index].setCoding(j,as_index.coding(positions[a][chr_index].pos(j)));
 					}
 				}
 			}
-			status=2;
 		}
 	}
 	
 	//Subthread to read mutations of a signle cancer type
-	private static class SubthreadReadSingle extends ThreadEx{
+	private class SubthreadReadSingle extends TaskEx{
 		int chr_index=-1;
-		ArrayList<Mutation>[][] positions=null;
-		ArrayList<String> donors=null;
+		MutationStore[] positions=null;
+		DonorDictionary donors=null;
 		String[] file_mut_snv=null;
 		String[] file_mut_indel=null;
-		int status=0;
 		public void runEx() throws java.io.IOException {
-			status=1;
 			{
-				for (int b=0;b<file_mut_snv.length;b++){
-					FileInputStream in=new FileInputStream(file_mut_snv[b]);
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						if(index(t[0],donors)!=-1){
-							positions[index(t[0],donors)][chr_index].add(new Mutation(Integer.parseInt(t[1]),t[2],t[3],t[0]));
-						}
-					}
-					input.close();
-				}
-				
-				for (int b=0;b<file_mut_indel.length;b++){
-					FileInputStream in=new FileInputStream(file_mut_indel[b]);
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						if(index(t[0],donors)!=-1){
-							String x="";
-							if(t.length>3){
-								x=t[3];
-							}
-							else{
-								x="";
-							}
-							positions[index(t[0],donors)][chr_index].add(new Mutation(Integer.parseInt(t[1]),t[2],x,t[0]));			
-						}
-					}
-					input.close();
-				}
-			
-				ArrayList<int[]> intervals_coding_raw=new ArrayList<int[]>();
-				int prev=-1;
-				int start=-1;
-				Hashtable<Integer,Integer> table_coding=new Hashtable<Integer,Integer>();
-				java.io.InputStream in=ZipOverlay.fileInputStream(file_as_annotation+chr[chr_index]+".txt");
-				BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-				input.readLine();
-				String s="";
-				while((s=input.readLine())!=null){
-					String[] t=s.split("	");
-					if(t.length==7){
-						int syn=0;
-						if(t[4].equals(t[2])){
-							syn++;
-						}
-						if(t[5].equals(t[2])){
-							syn++;
-						}
-						if(t[6].equals(t[2])){
-							syn++;
-						}
-						table_coding.put(Integer.parseInt(t[0]),syn);
-						
-						if(Integer.parseInt(t[0])-prev>1){
-							if(start!=-1){
-								intervals_coding_raw.add(new int[]{start,prev});
-							}
-							start=Integer.parseInt(t[0]);
-						}
-						prev=Integer.parseInt(t[0]);
+				//NB. if the MutationFiles are sorted, the SNVs and indels are merged in order of the position
+				MutationFileReader input=new MutationFileReader(MutationFileReader.concat(file_mut_snv,file_mut_indel),SignificanceNoncoding.sorted_mutations);
+				MutationStore.Builder builder=new MutationStore.Builder(donors);
+				String[] t=null;
+				while((t=input.next())!=null){
+					int index_donor=donors.id(t[0]);
+					if(index_donor!=-1){
+						builder.add(Integer.parseInt(t[1]),t[2],t[3],index_donor,false,-1,false,false,false);
 					}
 				}
 				input.close();
+				builder.endBin();
 				
-				for (int i=0;i<donors.size();i++){
-					for (int j=0;j<positions[i][chr_index].size();j++){
-						positions[i][chr_index].get(j).coding=table_coding.get(positions[i][chr_index].get(j).pos)!=null;
-					}
-				}
+				//NB. grouped by the donor, as the kataegis events are found for each donor
+				positions[chr_index]=builder.build().byDonor();
 				
+				ASIndex as_index=read_as_index(chr_index);
+				
+				for (int j=0;j<positions[chr_index].size();j++){
+					positions[chr_index].setCoding(j,as_index.coding(positions[chr_index].pos(j)));
+				}
 				
 			}
-			status=2;
 		}
 		
 	}
 	
-	//Subthread to read mutations of multiple cancer types 
-	private static class SubthreadRead extends ThreadEx{
+	//Subthread to read mutations of multiple cancer types
+	private static class SubthreadRead extends TaskEx{
 		int chr_index=-1;
 		int a=-1;
-		ArrayList<Mutation>[][][] positions=null;
-		ArrayList<String>[] donors=null;
+		MutationStore[][] positions=null;
+		DonorDictionary[] donors=null;
 		String[] file_mut_snv=null;
 		String[] file_mut_indel=null;
-		int status=0;
 		public void runEx() throws java.io.IOException {
-			status=1;
 			{
-				for (int b=0;b<file_mut_snv.length;b++){
-					FileInputStream in=new FileInputStream(file_mut_snv[b]);
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						if(index(t[0],donors[a])!=-1){
-							positions[a][index(t[0],donors[a])][chr_index].add(new Mutation(Integer.parseInt(t[1]),t[2],t[3],t[0]));
-						}
-					}
-					input.close();
-				}
-				
-				for (int b=0;b<file_mut_indel.length;b++){
-					FileInputStream in=new FileInputStream(file_mut_indel[b]);
-					BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String s="";
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						if(index(t[0],donors[a])!=-1){
-							String x="";
-							if(t.length>3){
-								x=t[3];
-							}
-							else{
-								x="";
-							}
-							positions[a][index(t[0],donors[a])][chr_index].add(new Mutation(Integer.parseInt(t[1]),t[2],x,t[0]));			
-						}
+				//NB. if the MutationFiles are sorted, the SNVs and indels are merged in order of the position
+				MutationFileReader input=new MutationFileReader(MutationFileReader.concat(file_mut_snv,file_mut_indel),SignificanceNoncoding.sorted_mutations);
+				MutationStore.Builder builder=new MutationStore.Builder(donors[a]);
+				String[] t=null;
+				while((t=input.next())!=null){
+					int index_donor=donors[a].id(t[0]);
+					if(index_donor!=-1){
+						builder.add(Integer.parseInt(t[1]),t[2],t[3],index_donor,false,-1,false,false,false);
 					}
-					input.close();
 				}
+				input.close();
+				builder.endBin();
 				
+				//NB. grouped by the donor, as the kataegis events are found for each donor
+				positions[a][chr_index]=builder.build().byDonor();
 			}
-			status=2;
 		}
 		
 	}
 	
 	//Subthread to filter out mutations that come from the same sample and exhibit local clustering (kataegis events).
 	//Filtering these events out is important so that they do not get confused with mutational hotspots.
-	private static class SubthreadKataegisSingle extends Thread{
-		ArrayList<Mutation>[][] positions=null;
-		int chr_index=-1;
-		int status=0;
-		
-		public void run(){
-			status=1;
-			Comparator<Mutation> comp_mut=(Mutation m1, Mutation m2)->{
-				return new Integer(m1.pos).compareTo(m2.pos);
-			};
-			{
-				ArrayList<Integer>[] index_kat=new ArrayList[positions.length];
-				for (int i=0;i<positions.length;i++){
-					index_kat[i]=new ArrayList<Integer>();
-					Collections.sort(positions[i][chr_index],comp_mut);
-					for (int j=0;j<positions[i][chr_index].size()-7;j++){
-						double avg=0;
-						int k=0;
-						for (;k<6;k++){
-							avg+=positions[i][chr_index].get(k+j+1).pos-positions[i][chr_index].get(k+j).pos;
-						}
-						if(avg/(double)(k+1)<=1000){
-							while(k+j+1<positions[i][chr_index].size()&&k<100&&avg/(double)(k+1)<=1000){
-								avg+=positions[i][chr_index].get(k+j+1).pos-positions[i][chr_index].get(k+j).pos;
-								k++;
-							}
-							for (int l=0;l<k;l++){
-								index_kat[i].add(j+l);
-							}
-							j+=k;
-						}
-					}
-				}
-				for (int i=0;i<index_kat.length;i++){
-					for (int j=index_kat[i].size()-1;j>=0;j--){
-						positions[i][chr_index].remove(index_kat[i].get(j).intValue());
-					}
-				}
+	//NB. there is a subthread for each donor and chromosome, so that a hypermutated donor does not hold up the rest
+	private static class SubthreadKataegis extends TaskEx{
+		MutationStore positions=null;
+		int donor=-1;
+		int[] order=null;
+		boolean[] kataegis=null;
 		
+		public void runEx(){
+			//NB. the mutations of the donor are sorted by the position and then the index, as a single key
+			int start=positions.start(donor);
+			long[] keys=new long[positions.end(donor)-start];
+			for (int j=0;j<keys.length;j++){
+				keys[j]=(long)positions.pos(start+j)<<32|(start+j);
 			}
-			status=2;
-		}
-		
-	}
-	
-	//Subthread to filter out mutations that come from the same sample and exhibit local clustering (kataegis events) for multiple cancer types.
-	//Filtering these events out is important so that they do not get confused with mutational hotspots.
-	private static class SubthreadKataegis extends Thread{
-		int a=-1;
-		ArrayList<Mutation>[][][] positions=null;
-		int chr_index=-1;
-		int status=0;
-		
-		
-		public void run(){
-			status=1;
-			{
-				
-				Comparator<Mutation> comp_mut=(Mutation m1, Mutation m2)->{
-					return new Integer(m1.pos).compareTo(m2.pos);
-				};
-				ArrayList<Integer>[] index_kat=new ArrayList[positions[a].length];
-				for (int i=0;i<positions[a].length;i++){
-					index_kat[i]=new ArrayList<Integer>();
-					Collections.sort(positions[a][i][chr_index],comp_mut);
-					for (int j=0;j<positions[a][i][chr_index].size()-7;j++){
-						double avg=0;
-						int k=0;
-						for (;k<6;k++){
-							avg+=positions[a][i][chr_index].get(k+j+1).pos-positions[a][i][chr_index].get(k+j).pos;
-						}
-						if(avg/(double)(k+1)<=1000){
-							while(k+j+1<positions[a][i][chr_index].size()&&k<100&&avg/(double)(k+1)<=1000){
-								avg+=positions[a][i][chr_index].get(k+j+1).pos-positions[a][i][chr_index].get(k+j).pos;
-								k++;
-							}
-							for (int l=0;l<k;l++){
-								index_kat[i].add(j+l);
-							}
-							j+=k;
-						}
-					}
-				}
-				for (int i=0;i<index_kat.length;i++){
-					for (int j=index_kat[i].size()-1;j>=0;j--){
-						positions[a][i][chr_index].remove(index_kat[i].get(j).intValue());
-					}
-				}
+			//NB. the mutations are already in order of the position if the MutationFiles are sorted
+			if(!SignificanceNoncoding.sorted_mutations){
+				java.util.Arrays.sort(keys);
+			}
+			int[] pos=new int[keys.length];
+			for (int j=0;j<pos.length;j++){
+				order[start+j]=(int)keys[j];
+				pos[j]=(int)(keys[j]>>>32);
 			}
-			status=2;
+			System.arraycopy(Kataegis.find(pos),0,kataegis,start,pos.length);
 		}
 		
 	}
-	
+		
 	//Subthread to annotate which mutations are in splice sites
-	private static class SubthreadSplice extends ThreadEx{
+	private class SubthreadSplice extends TaskEx{
 		int i=-1;
+		int j_start=0;
+		int j_end=0;
 		double[][] coverage=null;
-		ArrayList<Mutation>[][] mutations=null;
+		MutationStore[] mutations=null;
 		int[][] splice=null;
 		int[] splice_total=null;
-		int status=0;
 		public void runEx() throws java.io.IOException {
-			status=1;
-			splice=new int[1+(chr_length[i]-shift_mut)/10000][2];
-			splice_total=new int[1+(chr_length[i]-shift_mut)/10000];
 			{
-				for (int j=0;j<chr_length[i]/1000000;j++){
-					Hashtable<String,double[]> table=new Hashtable<String,double[]>();
-					if(ZipOverlay.exists(new File(file_splice_ai+chr[i]+"_"+(j+1)+".txt"))){
-						java.io.InputStream in=ZipOverlay.fileInputStream(file_splice_ai+chr[i]+"_"+(j+1)+".txt");
-						BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-						String s="";
-						while((s=input.readLine())!=null){
-							String[] t=s.split("	");
-							table.put(t[0]+"_"+t[1],new double[]{Double.parseDouble(t[2]),Double.parseDouble(t[3]),Double.parseDouble(t[4]),Double.parseDouble(t[5])});
-						}
-						input.close();
-					}
-					
-					
-					for (int k=(j*1000000-shift_mut)/10000;k<Math.min(mutations[i].length, ((j+1)*1000000-shift_mut)/10000);k++){
+				SpliceIndex splice_index=read_splice_index(i);
+				for (int j=j_start;j<j_end;j++){
+					for (int k=(j*1000000-shift_mut)/10000;k<Math.min(mutations[i].bins(), ((j+1)*1000000-shift_mut)/10000);k++){
 						if(k>=0){
 							if(low(chr[i])<=coverage[i][k]&&coverage[i][k]<high(chr[i])){
-								for (int l=0;l<mutations[i][k].size();l++){
-									if(!mutations[i][k].get(l).coding&&(mutations[i][k].get(l).group==0)&&mutations[i][k].get(l).ref.length()==1&&mutations[i][k].get(l).alt.length()==1){//||mutations[i][k].get(l).group==1
+								for (int l=mutations[i].start(k);l<mutations[i].end(k);l++){
+									if(!mutations[i].coding(l)&&(mutations[i].group(l)==0)&&mutations[i].refLength(l)==1&&mutations[i].altLength(l)==1){//||mutations[i].group(l)==1
 										
-										double[] dd=table.get(mutations[i][k].get(l).pos+"_"+mutations[i][k].get(l).alt);
-										if(dd!=null){
-											if(Math.max(dd[0], dd[2])>=0.5){
+										int flags=splice_index.flags(j,mutations[i].pos(l),mutations[i].altBase(l));
+										if(flags!=-1){
+											if((flags&SpliceIndex.FLAG_0)!=0){
 												splice[k][0]++;
 											}
-											if(Math.max(dd[1], dd[3])>=0.5){
+											if((flags&SpliceIndex.FLAG_1)!=0){
 												splice[k][1]++;
 											}
 										}
@@ -6857,53 +5849,52 @@ public class CombinedStatistics_100 {
 					}
 				}
 			}
-			status=2;
 		}
 	}
 	
 	//annotate mutation type
-	public static int index(String ref, String alt){
-		if(ref.equals("A")){
-			if(alt.equals("T")){
+	public static int index(char ref, char alt){
+		if(ref=='A'){
+			if(alt=='T'){
 				return 0;
 			}
-			else if(alt.equals("C")){
+			else if(alt=='C'){
 				return 1;
 			}
-			else if(alt.equals("G")){
+			else if(alt=='G'){
 				return 2;
 			}
 		}
-		else if(ref.equals("C")){
-			if(alt.equals("A")){
+		else if(ref=='C'){
+			if(alt=='A'){
 				return 0;
 			}
-			else if(alt.equals("G")){
+			else if(alt=='G'){
 				return 1;
 			}
-			else if(alt.equals("T")){
+			else if(alt=='T'){
 				return 2;
 			}
 		}
-		else if(ref.equals("G")){
-			if(alt.equals("T")){
+		else if(ref=='G'){
+			if(alt=='T'){
 				return 0;
 			}
-			else if(alt.equals("C")){
+			else if(alt=='C'){
 				return 1;
 			}
-			else if(alt.equals("A")){
+			else if(alt=='A'){
 				return 2;
 			}
 		}
-		else if(ref.equals("T")){
-			if(alt.equals("A")){
+		else if(ref=='T'){
+			if(alt=='A'){
 				return 0;
 			}
-			else if(alt.equals("G")){
+			else if(alt=='G'){
 				return 1;
 			}
-			else if(alt.equals("C")){
+			else if(alt=='C'){
 				return 2;
 			}
 		}	
@@ -6925,33 +5916,5 @@ public class CombinedStatistics_100 {
 		return -1;
 	}
 	
-	//find reference nucleotide in a genomic position of Hg19
-	public static char genome(int pos, ArrayList<char[]> genome){
-		
-		if(pos-1>=0&&(pos-1)/50<genome.size()){
-			char[] s = genome.get((pos-1)/50);
-			if((pos-1)%50<s.length)
-				return s[(pos-1)%50];
-		}
-		return 'N';
-	}
-	
-	//read reference genome for a chromosome
-	public static ArrayList<char[]> read_genome(String c) throws java.io.IOException {
-		ArrayList<char[]> genome=new ArrayList<char[]>();
-		{
-			java.io.InputStream in=ZipOverlay.fileInputStream(file_genome+c+".fa");//chr[i]
-			BufferedReader input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-			input.readLine();
-			String s="";
-			while((s=input.readLine())!=null){
-				genome.add(s.toUpperCase().toCharArray());
-			}
-			input.close();
-		}
-		
-		return genome;
-	}
-	
 	
 }
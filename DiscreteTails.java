@@ -0,0 +1,77 @@
+
+//
+// Cumulative probabilities of the Poisson, the binomial, and the
+//  Gamma-Poisson distributions, computed from the regularized gamma and beta
+//  functions as in commons-math, but without constructing a distribution (and
+//  its random generator) for each interval, with the pairs of the adjacent
+//  ones needed for the randomized p-values, and a batch of the Poisson ones
+//  for the fit of the hotspot factor
+//
+// NB. the values are the same as of PoissonDistribution and
+//  BinomialDistribution, so that the p-values don't change, and those of the
+//  Gamma-Poisson are the same as the sums of its terms up to rounding
+//
+
+public final class DiscreteTails {
+
+	// NB. the defaults of PoissonDistribution
+	private static final double _POISSON_EPSILON = 1e-12;
+	private static final int _POISSON_MAX_ITERATIONS = 10000000;
+
+	private DiscreteTails() {
+	}
+
+	// P(X <= k) for X ~ Poisson(mean)
+	public static double poissonCdf(int k, double mean) {
+		if (k < 0)
+			return 0;
+		if (k == Integer.MAX_VALUE)
+			return 1;
+		return org.apache.commons.math3.special.Gamma.regularizedGammaQ((double) k + 1, mean, _POISSON_EPSILON, _POISSON_MAX_ITERATIONS);
+	}
+
+	// P(X <= k) and P(X <= k - 1) for X ~ Poisson(mean) into cdf[0] and cdf[1]
+	public static void poissonCdfs(int k, double mean, double[] cdf) {
+		cdf[0] = poissonCdf(k, mean);
+		cdf[1] = poissonCdf(k - 1, mean);
+	}
+
+	// the pairs of poissonCdfs() for count values of k and mean
+	public static void poissonCdfs(int[] k, double[] mean, int count, double[] cdf, double[] cdf_prev) {
+		for (int i = 0; i < count; ++i) {
+			cdf[i] = poissonCdf(k[i], mean[i]);
+			cdf_prev[i] = poissonCdf(k[i] - 1, mean[i]);
+		}
+	}
+
+	// P(X <= k) for X ~ Binomial(n, p)
+	public static double binomialCdf(int k, int n, double p) {
+		if (k < 0)
+			return 0;
+		if (k >= n)
+			return 1;
+		return 1.0 - org.apache.commons.math3.special.Beta.regularizedBeta(p, k + 1.0, n - k);
+	}
+
+	// P(X >= k) and P(X >= k - 1) for X ~ Binomial(n, p) into upper[0] and upper[1], as 1 - P(X <= k - 1)
+	//  and 1 - P(X <= k - 2) (at least 0), the bounds of the randomized p-value of k
+	public static void binomialUpperTails(int k, int n, double p, double[] upper) {
+		upper[0] = Math.max(0, 1 - binomialCdf(k - 1, n, p));
+		upper[1] = Math.max(0, 1 - binomialCdf(k - 2, n, p));
+	}
+
+	// P(X <= k) for X ~ Gamma-Poisson(alpha, beta), i.e. a negative binomial of alpha successes of
+	//  probability beta / (beta + 1), by the regularized beta function rather than a sum of the terms
+	public static double gammaPoissonCdf(int k, double alpha, double beta) {
+		if (k < 0)
+			return 0;
+		return org.apache.commons.math3.special.Beta.regularizedBeta(beta / (beta + 1), alpha, k + 1.0);
+	}
+
+	// P(X <= k) and P(X <= k - 1) for X ~ Gamma-Poisson(alpha, beta) into cdf[0] and cdf[1]
+	public static void gammaPoissonCdfs(int k, double alpha, double beta, double[] cdf) {
+		cdf[0] = gammaPoissonCdf(k, alpha, beta);
+		cdf[1] = gammaPoissonCdf(k - 1, alpha, beta);
+	}
+
+} // DiscreteTails
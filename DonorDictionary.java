@@ -0,0 +1,63 @@
+
+//
+// Assigns the donors integer ids once, in order of appearance, so that
+//  the rest of the analysis can refer to them without strings
+//
+// NB. safe for concurrent lookups once no more donors are added
+//
+
+public final class DonorDictionary {
+
+	private final java.util.HashMap<String, Integer> _ids = new java.util.HashMap<String, Integer>();
+	private final java.util.ArrayList<String> _names = new java.util.ArrayList<String>();
+
+	// read the donors files (one donor per line, the first column if there are several)
+	public static DonorDictionary read(String[] files_donors) throws java.io.IOException {
+		DonorDictionary donors = new DonorDictionary();
+		for (int i = 0; i < files_donors.length; ++i) {
+			java.io.BufferedReader input = new java.io.BufferedReader(new java.io.InputStreamReader(
+				ZipFilter.filterInputStream(new java.io.FileInputStream(files_donors[i]))));
+			try {
+				for (String s; (s = input.readLine()) != null; ) {
+					int end = s.indexOf('\t');
+					donors.add(end != -1 ? s.substring(0, end) : s);
+				}
+			}
+			finally {
+				input.close();
+			}
+		}
+
+		return donors;
+	}
+
+	// get the id of donor, assigning the next one if it is new
+	public int add(String donor) {
+		Integer id = _ids.get(donor);
+		if (id == null) {
+			id = _names.size();
+			_ids.put(donor, id);
+			_names.add(donor);
+		}
+		return id;
+	}
+
+	// get the id of donor, or -1 if unknown
+	public int id(String donor) {
+		Integer id = _ids.get(donor);
+		return id != null ? id : -1;
+	}
+
+	public boolean contains(String donor) {
+		return _ids.containsKey(donor);
+	}
+
+	public String name(int id) {
+		return _names.get(id);
+	}
+
+	public int size() {
+		return _names.size();
+	}
+
+} // DonorDictionary
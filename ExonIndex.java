@@ -0,0 +1,172 @@
+
+//
+// The borders of the exons of each chromosome, compiled once into a cache
+//  file of sorted positions, and memory mapped from it, to find the nearest
+//  border of a position by a binary search
+//
+
+public final class ExonIndex {
+
+	private static final String _CACHE_SUFFIX = ".exons";
+	private static final int _BIN_SIZE = 10000;
+	private static final int _MAX_SPLICE_DISTANCE = 2;
+
+	private final java.nio.ByteBuffer _data;
+	private final int _chromosomes, _count, _exons;
+	private final int _pos_offset, _border_offset, _bin_offset;
+
+	private ExonIndex(java.nio.ByteBuffer data) {
+		_data = data;
+		_chromosomes = data.getInt(0);
+		_count = data.getInt(4 + 4 * _chromosomes);
+		_exons = data.getInt(8 + 4 * _chromosomes);
+		_pos_offset = 12 + 4 * _chromosomes;
+		_border_offset = _pos_offset + 4 * _count;
+		_bin_offset = _border_offset + 4 * _count;
+	}
+
+	// get the index of an exon annotation file, with the chromosomes named as in chr or chr2
+	//  (shared between all the threads)
+	// NB. without ReferenceGenome.cache_folder, the index is kept in memory instead
+	public static ExonIndex open(final String file_exons, final String[] chr, final String[] chr2) throws java.io.IOException {
+		if (ReferenceGenome.cache_folder == null)
+			return AnnotationCache.get("exons:" + file_exons, new AnnotationCache.Loader<ExonIndex>() {
+				public ExonIndex load() throws java.io.IOException {
+					java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(1 << 20);
+					_write(file_exons, chr, chr2, out);
+					return new ExonIndex(java.nio.ByteBuffer.wrap(out.toByteArray()));
+				}
+			});
+
+		final java.io.File file_cache = ReferenceGenome.cacheFile(file_exons, _CACHE_SUFFIX);
+		return AnnotationCache.getMapped("exons:" + file_cache.getPath(), new AnnotationCache.Loader<ExonIndex>() {
+			public ExonIndex load() throws java.io.IOException {
+				return new ExonIndex(ReferenceGenome.mapCacheFile(file_exons, file_cache, new ReferenceGenome.CacheWriter() {
+					public void write(java.io.OutputStream out) throws java.io.IOException {
+						_write(file_exons, chr, chr2, out);
+					}
+				}));
+			}
+		});
+	}
+
+	// check if the nearest exon border of pos is a splice site, i.e. pos is -2..+1 of a start or -1..+2 of an end
+	// NB. as before, only the exons listed in the 10kb bin of pos are considered, and of the equally near borders
+	//  the first one in the file wins, the start before the end
+	public boolean spliceSite(int chr_index, int pos) {
+		if (chr_index < 0 || chr_index >= _chromosomes)
+			return false;
+
+		// NB. the borders farther away can't be splice sites, nor can the nearest border be farther
+		int bin = pos / _BIN_SIZE;
+		int best_dist = Integer.MAX_VALUE, best_border = -1, best = -1;
+		int end = _data.getInt(4 + 4 * chr_index);
+		for (int i = _lowerBound(chr_index, pos - _MAX_SPLICE_DISTANCE); i < end; ++i) {
+			int dist = pos - _data.getInt(_pos_offset + 4 * i);
+			if (dist < -_MAX_SPLICE_DISTANCE)
+				break;
+
+			int border = _data.getInt(_border_offset + 4 * i), exon = border >>> 1;
+			if (bin < _data.getInt(_bin_offset + 8 * exon) || bin > _data.getInt(_bin_offset + 8 * exon + 4))
+				continue;
+			if (Math.abs(dist) < best_dist || (Math.abs(dist) == best_dist && border < best_border)) {
+				best_dist = Math.abs(dist);
+				best_border = border;
+				best = dist;
+			}
+		}
+
+		if (best_border == -1)
+			return false;
+		if ((best_border & 1) == 0)
+			return -2 <= best && best <= 1;
+		else
+			return -1 <= best && best <= 2;
+	}
+
+	// first border of the chromosome at or after pos
+	private int _lowerBound(int chr_index, int pos) {
+		int lo = chr_index > 0 ? _data.getInt(4 + 4 * (chr_index - 1)) : 0, hi = _data.getInt(4 + 4 * chr_index);
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_data.getInt(_pos_offset + 4 * mid) < pos)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private static int _index(String s, String[] chr, String[] chr2) {
+		for (int i = 0; i < chr.length; ++i)
+			if (chr[i].equals(s))
+				return i;
+		for (int i = 0; i < chr2.length; ++i)
+			if (chr2[i].equals(s))
+				return i;
+		return -1;
+	}
+
+	// compile the annotation of lines of ..., the chromosome, the start, and the end of an exon
+	// NB. the borders are 2bp inside the exon, and each exon is listed in the bins from 5bp before its
+	//  start border to a bin after its end border
+	private static void _write(String file_exons, String[] chr, String[] chr2, java.io.OutputStream out) throws java.io.IOException {
+		int count = 0;
+		long[] keys = new long[1 << 16];   // NB. the chromosome, the position, and the border
+		int[] bins = new int[keys.length];
+
+		java.io.BufferedReader input = new java.io.BufferedReader(new java.io.InputStreamReader(ZipFilter.filterInputStream(ZipOverlay.fileInputStream(file_exons))));
+		try {
+			for (String s; (s = input.readLine()) != null; ) {
+				String[] t = s.split("\t");
+				int chr_index = _index(t[1], chr, chr2);
+				int start = Integer.parseInt(t[2]) + 2, end = Integer.parseInt(t[3]) - 2;
+
+				// NB. keep the numbering of the exons, also of those on the unknown chromosomes
+				if (2 * count + 2 > keys.length) {
+					keys = java.util.Arrays.copyOf(keys, 2 * keys.length);
+					bins = java.util.Arrays.copyOf(bins, keys.length);
+				}
+				keys[2 * count] = chr_index < 0 ? Long.MAX_VALUE : _key(chr_index, start, 2 * count);
+				keys[2 * count + 1] = chr_index < 0 ? Long.MAX_VALUE : _key(chr_index, end, 2 * count + 1);
+				bins[2 * count] = Math.max((start - 5) / _BIN_SIZE, 0);
+				bins[2 * count + 1] = 1 + (end + 5) / _BIN_SIZE;
+				++count;
+			}
+		}
+		finally {
+			input.close();
+		}
+
+		keys = java.util.Arrays.copyOf(keys, 2 * count);
+		java.util.Arrays.sort(keys);
+
+		int n = 0;
+		int[] ends = new int[chr.length];
+		for (; n < keys.length && keys[n] != Long.MAX_VALUE; ++n)
+			++ends[(int) (keys[n] >>> 56)];
+		for (int i = 1; i < ends.length; ++i)
+			ends[i] += ends[i - 1];
+
+		java.io.DataOutputStream data = new java.io.DataOutputStream(out);
+		data.writeInt(chr.length);
+		for (int i = 0; i < ends.length; ++i)
+			data.writeInt(ends[i]);
+		data.writeInt(n);
+		data.writeInt(count);
+		for (int i = 0; i < n; ++i)
+			data.writeInt((int) (keys[i] >> 24) ^ Integer.MIN_VALUE);
+		for (int i = 0; i < n; ++i)
+			data.writeInt((int) keys[i] & 0xffffff);
+		for (int i = 0; i < 2 * count; ++i)
+			data.writeInt(bins[i]);
+		data.flush();
+	}
+
+	private static long _key(int chr_index, int pos, int border) {
+		if (border >= 1 << 24)
+			throw new java.lang.IllegalArgumentException("too many exons");
+		return (long) chr_index << 56 | ((pos ^ Integer.MIN_VALUE) & 0xffffffffL) << 24 | border;
+	}
+
+} // ExonIndex
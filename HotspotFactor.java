@@ -0,0 +1,178 @@
+
+//
+// Fits the factor of the rate of the hotspot position of a bin, from the
+//  largest number of mutations at a position of each bin, with the bins of
+//  the same counts, maximum, and eligible length grouped, so that the Poisson
+//  probabilities are computed once for each group rather than once for each
+//  bin and factor, and without constructing the distributions
+//
+// NB. the probabilities are the same as those of PoissonDistribution, and the
+//  log-likelihood is summed over the bins in the order added, so that the
+//  factor found by maximize() is the same as of the scan over the bins
+//
+
+public final class HotspotFactor {
+
+	private static final double _INV_PHI = (Math.sqrt(5.0) - 1.0) / 2.0;
+
+	private final java.util.HashMap<_Key, Integer> _groups = new java.util.HashMap<_Key, Integer>();
+	private int[] _n = new int[256], _max = new int[256];
+	private double[] _eligible = new double[256];
+	private final double[] _cdfs = new double[2];
+	private double[] _base1 = new double[256], _base0 = new double[256];   // NB. the parts that don't depend on the factor
+	private int _size = 0;
+
+	private int[] _bins = new int[1024];
+	private int _bins_size = 0;
+
+	private double _max_likelihood = -Double.MAX_VALUE;
+
+	// add a bin with n mutations, at most max at a position, of eligible length
+	public void add(int n, int max, double eligible) {
+		_Key key = new _Key(n, max, Double.doubleToLongBits(eligible));
+		Integer group = _groups.get(key);
+		if (group == null) {
+			if (_size == _n.length) {
+				_n = java.util.Arrays.copyOf(_n, 2 * _size);
+				_max = java.util.Arrays.copyOf(_max, 2 * _size);
+				_eligible = java.util.Arrays.copyOf(_eligible, 2 * _size);
+				_base1 = java.util.Arrays.copyOf(_base1, 2 * _size);
+				_base0 = java.util.Arrays.copyOf(_base0, 2 * _size);
+			}
+			_n[_size] = n;
+			_max[_size] = max;
+			_eligible[_size] = eligible;
+			DiscreteTails.poissonCdfs(max, n / eligible, _cdfs);
+			_base1[_size] = Math.pow(_cdfs[0], eligible - 1);
+			_base0[_size] = Math.pow(_cdfs[1], eligible - 1);
+			group = _size++;
+			_groups.put(key, group);
+		}
+
+		if (_bins_size == _bins.length)
+			_bins = java.util.Arrays.copyOf(_bins, 2 * _bins_size);
+		_bins[_bins_size++] = group;
+	}
+
+	// average log-likelihood of the bins with the probability of the hotspot position times f
+	public double likelihood(double f) {
+		double[] mean = new double[_size], cdf = new double[_size], cdf_prev = new double[_size];
+		for (int g = 0; g < _size; ++g)
+			mean[g] = _n[g] * f / _eligible[g];
+		DiscreteTails.poissonCdfs(_max, mean, _size, cdf, cdf_prev);
+
+		double[] log_p = new double[_size];
+		for (int g = 0; g < _size; ++g) {
+			double p = _base1[g] * cdf[g] - _base0[g] * cdf_prev[g];
+			log_p[g] = p > 0 ? Math.log(p) : Double.NaN;
+		}
+
+		double sum = 0;
+		double sum_n = 0;
+		for (int b = 0; b < _bins_size; ++b)
+			if (!Double.isNaN(log_p[_bins[b]])) {
+				sum += log_p[_bins[b]];
+				sum_n++;
+			}
+		return sum / sum_n;
+	}
+
+	// factor of the largest likelihood, the first one if several, evaluating all of them in parallel
+	public double maximize(double[] factors) throws java.io.IOException {
+		final double[] values = new double[factors.length];
+		_Likelihood[] tasks = new _Likelihood[factors.length];
+		for (int i = 0; i < factors.length; ++i)
+			tasks[i] = new _Likelihood(factors, values, i);
+		ThreadPool.invokeAll(tasks);
+
+		int best = 0;
+		_max_likelihood = -Double.MAX_VALUE;
+		for (int i = 0; i < factors.length; ++i)
+			if (values[i] > _max_likelihood) {
+				_max_likelihood = values[i];
+				best = i;
+			}
+		return factors[best];
+	}
+
+	// factor of the largest likelihood by a golden-section search over the factors (in increasing order)
+	// NB. the search brackets a local maximum, so the first factor is checked separately
+	public double search(double[] factors) {
+		double[] values = new double[factors.length];
+		java.util.Arrays.fill(values, Double.NaN);
+
+		int lo = 0, hi = factors.length - 1;
+		while (hi - lo > 2) {
+			int m1 = lo + (int) Math.round((1 - _INV_PHI) * (hi - lo));
+			int m2 = lo + (int) Math.round(_INV_PHI * (hi - lo));
+			if (m1 == m2)
+				++m2;
+			if (_value(factors, values, m1) >= _value(factors, values, m2))
+				hi = m2;
+			else
+				lo = m1;
+		}
+
+		int best = 0;
+		_max_likelihood = _value(factors, values, 0);
+		for (int i = Math.max(lo, 1); i <= hi; ++i)
+			if (_value(factors, values, i) > _max_likelihood) {
+				_max_likelihood = _value(factors, values, i);
+				best = i;
+			}
+		return factors[best];
+	}
+
+	// likelihood of the factor found
+	public double max() {
+		return _max_likelihood;
+	}
+
+	private double _value(double[] factors, double[] values, int i) {
+		if (Double.isNaN(values[i]))
+			values[i] = likelihood(factors[i]);
+		return values[i];
+	}
+
+	private final class _Likelihood extends TaskEx {
+
+		private final double[] _factors, _values;
+		private final int _i;
+
+		_Likelihood(double[] factors, double[] values, int i) {
+			_factors = factors;
+			_values = values;
+			_i = i;
+		}
+
+		public void runEx() {
+			_values[_i] = likelihood(_factors[_i]);
+		}
+
+	}
+
+	private static final class _Key {
+
+		private final int _a, _b;
+		private final long _c;
+
+		_Key(int a, int b, long c) {
+			_a = a;
+			_b = b;
+			_c = c;
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof _Key))
+				return false;
+			_Key key = (_Key) other;
+			return _a == key._a && _b == key._b && _c == key._c;
+		}
+
+		public int hashCode() {
+			return (31 * _a + _b) * 31 + Long.hashCode(_c);
+		}
+
+	}
+
+} // HotspotFactor
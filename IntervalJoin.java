@@ -0,0 +1,91 @@
+
+//
+// Joins intervals with positions in one sweep over both in order of the
+//  position, e.g. to annotate mutations with the regions that contain them
+//
+// NB. the intervals can overlap, in which case the last one wins, as if they
+//  were applied one after the other
+//
+
+public final class IntervalJoin {
+
+	private final java.util.ArrayList<int[]> _intervals = new java.util.ArrayList<int[]>();
+
+	// add the interval [start, end] (both inclusive) with a value, later ones taking precedence
+	public void add(int start, int end, int value) {
+		if (start <= end)
+			_intervals.add(new int[]{ start, end, _intervals.size(), value });
+		else
+			_intervals.add(null);
+	}
+
+	// for each of the positions, the value of the last interval that contains it, or missing if none
+	public int[] join(int[] pos, int missing) {
+		int[] order = _order(pos);
+
+		int[][] intervals = new int[_intervals.size()][];
+		int n = 0;
+		for (int[] interval : _intervals)
+			if (interval != null)
+				intervals[n++] = interval;
+		intervals = java.util.Arrays.copyOf(intervals, n);
+		java.util.Arrays.sort(intervals, new java.util.Comparator<int[]>() {
+			public int compare(int[] x, int[] y) {
+				return Integer.compare(x[0], y[0]);
+			}
+		});
+
+		// NB. the started intervals in a heap by their index, the ended ones are dropped when they come on top
+		int[] heap = new int[n];
+		int heap_size = 0;
+
+		int[] value = new int[pos.length];
+		for (int i = 0, next = 0; i < order.length; ++i) {
+			int p = pos[order[i]];
+			for (; next < n && intervals[next][0] <= p; ++next)
+				heap_size = _push(heap, heap_size, intervals[next][2]);
+			while (heap_size > 0 && _intervals.get(heap[0])[1] < p)
+				heap_size = _pop(heap, heap_size);
+			value[order[i]] = heap_size > 0 ? _intervals.get(heap[0])[3] : missing;
+		}
+
+		return value;
+	}
+
+	// indices of the positions in order of the position
+	private static int[] _order(int[] pos) {
+		long[] keys = new long[pos.length];
+		for (int i = 0; i < pos.length; ++i)
+			keys[i] = (long) pos[i] << 32 | i;
+		java.util.Arrays.sort(keys);
+
+		int[] order = new int[pos.length];
+		for (int i = 0; i < keys.length; ++i)
+			order[i] = (int) keys[i];
+		return order;
+	}
+
+	// max-heap of interval indices
+	private static int _push(int[] heap, int size, int value) {
+		int i = size++;
+		for (; i > 0 && heap[(i - 1) / 2] < value; i = (i - 1) / 2)
+			heap[i] = heap[(i - 1) / 2];
+		heap[i] = value;
+		return size;
+	}
+
+	private static int _pop(int[] heap, int size) {
+		int value = heap[--size];
+		int i = 0;
+		for (int child; (child = 2 * i + 1) < size; i = child) {
+			if (child + 1 < size && heap[child + 1] > heap[child])
+				++child;
+			if (heap[child] <= value)
+				break;
+			heap[i] = heap[child];
+		}
+		heap[i] = value;
+		return size;
+	}
+
+} // IntervalJoin
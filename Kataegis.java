@@ -0,0 +1,39 @@
+
+//
+// Finds the kataegis events, i.e. the runs of 7 or more mutations of a donor
+//  that are on average at most 1kb apart, in a single pass over the positions
+//
+
+public final class Kataegis {
+
+	private static final int _MIN_RUN = 7;
+	private static final int _MAX_RUN = 100;
+	private static final double _MAX_DISTANCE = 1000;
+
+	private Kataegis() {
+	}
+
+	// mark the mutations that are part of an event, pos must be sorted
+	// NB. an event grows one mutation at a time while the average distance stays below
+	//  the limit, and after an event the next mutation is never the start of another one
+	public static boolean[] find(int[] pos) {
+		boolean[] kataegis = new boolean[pos.length];
+		for (int j = 0; j < pos.length - _MIN_RUN; ++j) {
+			int k = _MIN_RUN - 1;
+			if (_distance(pos, j, k) <= _MAX_DISTANCE) {
+				while (k + j + 1 < pos.length && k < _MAX_RUN && _distance(pos, j, k) <= _MAX_DISTANCE)
+					++k;
+				for (int l = 0; l < k; ++l)
+					kataegis[j + l] = true;
+				j += k;
+			}
+		}
+		return kataegis;
+	}
+
+	// average distance of the k + 1 positions starting at j
+	private static double _distance(int[] pos, int j, int k) {
+		return (double) (pos[j + k] - pos[j]) / (double) (k + 1);
+	}
+
+} // Kataegis
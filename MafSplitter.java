@@ -0,0 +1,304 @@
+
+//
+// Splits MAF files into one file per chromosome and mutation type (SNV or
+//  indel) and a list of the donors, working on the raw bytes of the lines
+//
+
+public final class MafSplitter {
+
+	private static final int _BUFFER_SIZE = 1 << 20;
+	private static final int _PARTITION_BUFFER_SIZE = 1 << 18;
+
+	private static final String[] _COLUMNS = { "Tumor_Sample_Barcode", "Chromosome", "Position", "Reference_Allele", "Tumor_Seq_Allele" };
+	private static final int _SAMPLE = 0, _CHR = 1, _POS = 2, _REF = 3, _ALT = 4;
+
+	private final byte[][] _chr_names;
+	private final int[] _chr_index;
+
+	// chromosome i is named chr[i] or chr_alt[i] in the input
+	public MafSplitter(String[] chr, String[] chr_alt) {
+		_chr_names = new byte[chr.length + chr_alt.length][];
+		_chr_index = new int[_chr_names.length];
+		for (int i = 0; i < chr.length; ++i) {
+			_chr_names[i] = chr[i].getBytes(java.nio.charset.StandardCharsets.UTF_8);
+			_chr_index[i] = i;
+		}
+		for (int i = 0; i < chr_alt.length; ++i) {
+			_chr_names[chr.length + i] = chr_alt[i].getBytes(java.nio.charset.StandardCharsets.UTF_8);
+			_chr_index[chr.length + i] = i;
+		}
+	}
+
+	// split the files files_in[a] of each entity a into files_out[a][chr][0] (SNVs) and files_out[a][chr][1] (indels),
+	//  writing the donors in order of appearance to files_donors[a]
+	// NB. all the files are read in parallel, the output is the same as if they were read one after the other
+	public void split(String[][] files_in, final String[][][] files_out, String[] files_donors) throws java.io.IOException {
+		java.util.ArrayList<_SplitTask> tasks = new java.util.ArrayList<_SplitTask>();
+		_SplitTask[][] entity_tasks = new _SplitTask[files_in.length][];
+		for (int a = 0; a < files_in.length; ++a) {
+			entity_tasks[a] = new _SplitTask[files_in[a].length];
+			for (int j = 0; j < files_in[a].length; ++j) {
+				// NB. with several files, each goes into its own parts that are concatenated afterwards
+				String[][] parts = files_in[a].length == 1 ? files_out[a] : _partNames(files_out[a], j);
+				entity_tasks[a][j] = new _SplitTask(files_in[a][j], parts);
+				tasks.add(entity_tasks[a][j]);
+			}
+		}
+
+		ThreadPool.invokeAll(tasks.toArray(new _SplitTask[tasks.size()]));
+
+		for (int a = 0; a < files_in.length; ++a) {
+			DonorDictionary donors = new DonorDictionary();
+			for (int j = 0; j < entity_tasks[a].length; ++j)
+				for (int k = 0; k < entity_tasks[a][j].donors.size(); ++k)
+					donors.add(entity_tasks[a][j].donors.name(k));
+
+			if (entity_tasks[a].length != 1)
+				for (int i = 0; i < files_out[a].length; ++i)
+					for (int t = 0; t < files_out[a][i].length; ++t) {
+						String[] parts = new String[entity_tasks[a].length];
+						for (int j = 0; j < parts.length; ++j)
+							parts[j] = entity_tasks[a][j].files_out[i][t];
+						_concatenate(parts, files_out[a][i][t]);
+					}
+
+			java.io.OutputStream out = _openOutput(files_donors[a]);
+			try {
+				for (int k = 0; k < donors.size(); ++k) {
+					out.write(donors.name(k).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+					out.write('\n');
+				}
+			}
+			finally {
+				out.close();
+			}
+		}
+	}
+
+	private static String[][] _partNames(String[][] files_out, int j) {
+		String[][] parts = new String[files_out.length][];
+		for (int i = 0; i < files_out.length; ++i) {
+			parts[i] = new String[files_out[i].length];
+			for (int t = 0; t < files_out[i].length; ++t) {
+				// NB. keep the name at the end, so that the parts get the same compression
+				java.io.File file = new java.io.File(files_out[i][t]);
+				parts[i][t] = new java.io.File(file.getParentFile(), "Part" + j + "_" + file.getName()).getPath();
+			}
+		}
+		return parts;
+	}
+
+	// NB. works also for compressed parts, as GZIP streams can be concatenated
+	private static void _concatenate(String[] parts, String file_out) throws java.io.IOException {
+		java.nio.channels.FileChannel out = java.nio.channels.FileChannel.open(new java.io.File(file_out).toPath(),
+			java.nio.file.StandardOpenOption.WRITE, java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			for (int j = 0; j < parts.length; ++j) {
+				java.nio.channels.FileChannel in = java.nio.channels.FileChannel.open(new java.io.File(parts[j]).toPath(), java.nio.file.StandardOpenOption.READ);
+				try {
+					for (long pos = 0, size = in.size(); pos < size; )
+						pos += in.transferTo(pos, size - pos, out);
+				}
+				finally {
+					in.close();
+				}
+				new java.io.File(parts[j]).delete();
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static java.io.OutputStream _openOutput(String file) throws java.io.IOException {
+		return new java.io.BufferedOutputStream(ZipFilter.filterOutputStream(new java.io.FileOutputStream(file), file), _PARTITION_BUFFER_SIZE);
+	}
+
+	private int _chrIndex(byte[] line, int start, int end) {
+		for (int i = 0; i < _chr_names.length; ++i) {
+			byte[] name = _chr_names[i];
+			if (name.length != end - start)
+				continue;
+			int k = 0;
+			while (k < name.length && name[k] == line[start + k])
+				++k;
+			if (k == name.length)
+				return _chr_index[i];
+		}
+		return -1;
+	}
+
+	private final class _SplitTask extends TaskEx {
+
+		final String file_in;
+		final String[][] files_out;
+		final DonorDictionary donors = new DonorDictionary();
+
+		_SplitTask(String file_in, String[][] files_out) {
+			this.file_in = file_in;
+			this.files_out = files_out;
+		}
+
+		public void runEx() throws java.io.IOException {
+			java.io.InputStream in = ZipFilter.filterInputStream(new java.io.FileInputStream(file_in));
+			java.io.OutputStream[][] out = new java.io.OutputStream[files_out.length][];
+			boolean done = false;
+			try {
+				for (int i = 0; i < out.length; ++i) {
+					out[i] = new java.io.OutputStream[files_out[i].length];
+					for (int t = 0; t < out[i].length; ++t)
+						out[i][t] = _openOutput(files_out[i][t]);
+				}
+
+				_split(in, out);
+				done = true;
+			}
+			finally {
+				// NB. the streams not opened yet are null, and an error of the close() is only thrown
+				//  if there was none before, which it would hide
+				java.io.IOException error = _close(in, out);
+				if (done && error != null)
+					throw error;
+			}
+		}
+
+		// close all the streams, even if some of them fail, returning the first error
+		private java.io.IOException _close(java.io.InputStream in, java.io.OutputStream[][] out) {
+			java.io.IOException error = null;
+			try {
+				in.close();
+			}
+			catch (java.io.IOException close_error) {
+				error = close_error;
+			}
+			for (int i = 0; i < out.length; ++i)
+				for (int t = 0; out[i] != null && t < out[i].length; ++t)
+					if (out[i][t] != null)
+						try {
+							out[i][t].close();
+						}
+						catch (java.io.IOException close_error) {
+							if (error == null)
+								error = close_error;
+						}
+			return error;
+		}
+
+		private byte[] _buffer = new byte[_BUFFER_SIZE];
+		private int _begin = 0, _end = 0;
+		private boolean _eof = false;
+
+		// read more input after the data in [_begin, _end)
+		private void _fill(java.io.InputStream in) throws java.io.IOException {
+			if (_begin > 0) {
+				System.arraycopy(_buffer, _begin, _buffer, 0, _end - _begin);
+				_end -= _begin;
+				_begin = 0;
+			}
+			if (_end == _buffer.length)
+				_buffer = java.util.Arrays.copyOf(_buffer, 2 * _buffer.length);
+
+			int count = in.read(_buffer, _end, _buffer.length - _end);
+			if (count < 0)
+				_eof = true;
+			else
+				_end += count;
+		}
+
+		private void _split(java.io.InputStream in, java.io.OutputStream[][] out) throws java.io.IOException {
+			boolean header = true, skip_lf = false;
+			int[] columns = null;
+			int[] field_start = null, field_end = null;
+			byte[] last_sample = new byte[0];
+
+			while (true) {
+				// NB. the line breaks can be either of \n, \r or \r\n
+				if (skip_lf && _begin < _end) {
+					skip_lf = false;
+					if (_buffer[_begin] == '\n') {
+						++_begin;
+						continue;
+					}
+				}
+
+				// find the end of the next line, reading more if needed
+				int eol = _begin;
+				while (eol < _end && _buffer[eol] != '\n' && _buffer[eol] != '\r')
+					++eol;
+				if (eol == _end && !_eof) {
+					_fill(in);
+					continue;
+				}
+				if (eol == _begin && eol == _end)
+					break;
+
+				if (header) {
+					java.util.List<String> t = java.util.Arrays.asList(new String(_buffer, _begin, eol - _begin, java.nio.charset.StandardCharsets.UTF_8).split("\t"));
+					int fields = 0;
+					columns = new int[_COLUMNS.length];
+					for (int k = 0; k < _COLUMNS.length; ++k) {
+						columns[k] = t.indexOf(_COLUMNS[k]);
+						if (columns[k] == -1)
+							throw new java.io.IOException(file_in + ": no column " + _COLUMNS[k]);
+						fields = Math.max(fields, columns[k] + 1);
+					}
+					field_start = new int[fields];
+					field_end = new int[fields];
+					header = false;
+				}
+				else {
+					// locate the fields, the missing ones are empty
+					int n = 0;
+					for (int p = _begin; n < field_start.length; ++p) {
+						field_start[n] = p;
+						while (p < eol && _buffer[p] != '\t')
+							++p;
+						field_end[n++] = p;
+						if (p == eol)
+							break;
+					}
+					for (; n < field_start.length; ++n)
+						field_start[n] = field_end[n] = eol;
+
+					int chr_index = _chrIndex(_buffer, field_start[columns[_CHR]], field_end[columns[_CHR]]);
+					if (chr_index != -1) {
+						boolean snv = field_end[columns[_REF]] - field_start[columns[_REF]] == 1 && field_end[columns[_ALT]] - field_start[columns[_ALT]] == 1;
+						java.io.OutputStream o = out[chr_index][snv ? 0 : 1];
+						for (int k = 0; k < _COLUMNS.length; ++k) {
+							if (k == _CHR)
+								continue;
+							if (k != _SAMPLE)
+								o.write('\t');
+							o.write(_buffer, field_start[columns[k]], field_end[columns[k]] - field_start[columns[k]]);
+						}
+						o.write('\n');
+
+						// NB. MAFs are mostly grouped by the sample, so only look it up when it changes
+						int sample_start = field_start[columns[_SAMPLE]], sample_length = field_end[columns[_SAMPLE]] - sample_start;
+						if (!_equals(last_sample, _buffer, sample_start, sample_length)) {
+							last_sample = java.util.Arrays.copyOfRange(_buffer, sample_start, sample_start + sample_length);
+							donors.add(new String(last_sample, java.nio.charset.StandardCharsets.UTF_8));
+						}
+					}
+				}
+
+				_begin = eol;
+				if (_begin < _end) {
+					skip_lf = _buffer[_begin] == '\r';
+					++_begin;
+				}
+			}
+		}
+
+	}
+
+	private static boolean _equals(byte[] a, byte[] b, int offset, int length) {
+		if (a.length != length)
+			return false;
+		for (int i = 0; i < length; ++i)
+			if (a[i] != b[offset + i])
+				return false;
+		return true;
+	}
+
+} // MafSplitter
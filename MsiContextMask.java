@@ -0,0 +1,109 @@
+
+//
+// The MsiDetector flags of every position of a chromosome, precomputed
+//  once into a cache file of the runs of positions with the same flags set,
+//  and memory mapped from it
+//
+// NB. the flags are set for few positions, in runs of a few bases, so the
+//  runs are much smaller than the 2 bits per position of a dense mask
+//
+
+public final class MsiContextMask {
+
+	private static final String _CACHE_SUFFIX = ".msi_runs";
+
+	private final ReferenceGenome _genome;
+	private final java.nio.ByteBuffer _runs;   // NB. the count, the starts, the ends (exclusive), and the flags, sorted by start
+	private final int _count;
+	private final MsiDetector _detector;
+
+	private MsiContextMask(ReferenceGenome genome, java.nio.ByteBuffer runs) {
+		_genome = genome;
+		_runs = runs;
+		_count = runs == null ? 0 : runs.getInt(0);
+		_detector = runs == null ? new MsiDetector(genome) : null;
+	}
+
+	// get the mask for the chromosome of a FASTA file
+	// NB. without ReferenceGenome.cache_folder, the positions are classified on the fly instead
+	//  and the result can only be used by a single thread
+	public static MsiContextMask open(final String file_fa) throws java.io.IOException {
+		final ReferenceGenome genome = ReferenceGenome.open(file_fa);
+		if (ReferenceGenome.cache_folder == null)
+			return new MsiContextMask(genome, null);
+
+		final java.io.File file_cache = ReferenceGenome.cacheFile(file_fa, _CACHE_SUFFIX);
+		return AnnotationCache.getMapped("msi:" + file_cache.getPath(), new AnnotationCache.Loader<MsiContextMask>() {
+			public MsiContextMask load() throws java.io.IOException {
+				return new MsiContextMask(genome, ReferenceGenome.mapCacheFile(file_fa, file_cache, new ReferenceGenome.CacheWriter() {
+					public void write(java.io.OutputStream out) throws java.io.IOException {
+						_write(genome, out);
+					}
+				}));
+			}
+		});
+	}
+
+	// get the MsiDetector flags for the (1-based) position pos
+	public int context(int pos) {
+		if (_runs == null)
+			return _detector.context(pos);
+		if (pos < 1 || pos > _genome.length())
+			// NB. past the ends of the sequence the bases on one side are all 'N', which is a repeat
+			return MsiDetector.REPEAT;
+
+		// NB. the last run starting at or before pos
+		int lo = 0, hi = _count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_runs.getInt(4 + 4 * mid) <= pos)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		if (hi < 0 || pos >= _runs.getInt(4 + 4 * _count + 4 * hi))
+			return 0;
+		return _runs.get(4 + 8 * _count + hi);
+	}
+
+	private static void _write(ReferenceGenome genome, java.io.OutputStream out) throws java.io.IOException {
+		MsiDetector detector = new MsiDetector(genome);
+		int length = genome.length();
+
+		int count = 0;
+		int[] starts = new int[1 << 16], ends = new int[starts.length];
+		byte[] flags = new byte[starts.length];
+
+		for (int pos = 1; pos <= length; ) {
+			int context = detector.context(pos);
+			if (context == 0) {
+				++pos;
+				continue;
+			}
+
+			int start = pos;
+			while (++pos <= length && detector.context(pos) == context)
+				;
+
+			if (count == starts.length) {
+				starts = java.util.Arrays.copyOf(starts, 2 * count);
+				ends = java.util.Arrays.copyOf(ends, 2 * count);
+				flags = java.util.Arrays.copyOf(flags, 2 * count);
+			}
+			starts[count] = start;
+			ends[count] = pos;
+			flags[count] = (byte) context;
+			++count;
+		}
+
+		java.io.DataOutputStream data = new java.io.DataOutputStream(out);
+		data.writeInt(count);
+		for (int i = 0; i < count; ++i)
+			data.writeInt(starts[i]);
+		for (int i = 0; i < count; ++i)
+			data.writeInt(ends[i]);
+		data.write(flags, 0, count);
+		data.flush();
+	}
+
+} // MsiContextMask
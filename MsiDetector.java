@@ -0,0 +1,67 @@
+
+//
+// Classifies the sequence context of mutations for the MSI annotation
+//  without allocating, reading the reference through a window of bases
+//
+
+public final class MsiDetector {
+
+	// NB. flags returned by context()
+	public static final int REPEAT = 1;        // in a repeat of 5+ bases with a unit of 1-5 bases (msi)
+	public static final int MSI_CONTEXT = 2;   // in an AAG[T]{3+} or [A]{3+}CTT context (msi2)
+
+	private static final int _MARGIN = 12;   // NB. the farthest base used, for 2 copies of a 4 base unit
+	private static final int _BLOCK = 1 << 16;
+
+	private final ReferenceGenome _genome;
+	private final byte[] _bases = new byte[_MARGIN + _BLOCK + _MARGIN];
+	private int _start = 0;
+	private boolean _loaded = false;
+
+	public MsiDetector(ReferenceGenome genome) {
+		_genome = genome;
+	}
+
+	// get the flags for the (1-based) position pos, ignoring whether it is coding
+	// NB. the bases are read by blocks, so visit the positions roughly in order
+	public int context(int pos) {
+		if (!_loaded || pos < _start || pos >= _start + _BLOCK) {
+			_start = pos - _BLOCK / 2;
+			_genome.get(_start - _MARGIN, _bases, 0, _bases.length);
+			_loaded = true;
+		}
+
+		int i = _MARGIN + (pos - _start);
+		return (_isRepeat(i) ? REPEAT : 0) | (_isMsiContext(i) ? MSI_CONTEXT : 0);
+	}
+
+	private boolean _isRepeat(int i) {
+		for (int unit = 1; unit <= 5; ++unit) {
+			int copies = (5 + unit - 1) / unit;
+			if (_isRepeat(i + 1, unit, copies, +1) || _isRepeat(i - unit, unit, copies, -1))
+				return true;
+		}
+		return false;
+	}
+
+	// NB. out of range bases are all 'N' and thus match each other, like the strings did
+	private boolean _isRepeat(int first, int unit, int copies, int direction) {
+		for (int copy = 1; copy <= copies; ++copy) {
+			int other = first + direction * copy * unit;
+			for (int j = 0; j < unit; ++j)
+				if (_bases[first + j] != _bases[other + j])
+					return false;
+		}
+		return true;
+	}
+
+	private boolean _isMsiContext(int i) {
+		byte[] b = _bases;
+		if (b[i] == 'A' && b[i - 1] == 'A' && b[i + 1] == 'G')
+			return b[i + 2] == 'T' && b[i + 3] == 'T' && b[i + 4] == 'T';
+		if (b[i] == 'T' && b[i - 1] == 'C' && b[i + 1] == 'T')
+			return b[i - 2] == 'A' && b[i - 3] == 'A' && b[i - 4] == 'A';
+		return false;
+	}
+
+} // MsiDetector
@@ -0,0 +1,98 @@
+
+//
+// Reads the mutation files of a chromosome one line at a time, split into
+//  the sample, position, ref and alt (empty if missing)
+//
+// NB. if the files are sorted by the position (see MutationSorter), they are
+//  merged so that the lines come out sorted, with ties going to the earlier
+//  file, and otherwise they are read one after the other
+//
+
+public final class MutationFileReader {
+
+	private final String[] _files;
+	private final boolean _sorted;
+	private final java.io.BufferedReader[] _inputs;
+	private final String[][] _lines;
+	private final int[] _pos;
+	private int _current = 0;
+
+	public MutationFileReader(String[] files, boolean sorted) throws java.io.IOException {
+		_files = files;
+		_sorted = sorted;
+		_inputs = new java.io.BufferedReader[files.length];
+		_lines = new String[files.length][];
+		_pos = new int[files.length];
+		java.util.Arrays.fill(_pos, Integer.MIN_VALUE);
+		try {
+			for (int i = 0; i < files.length; ++i) {
+				_inputs[i] = new java.io.BufferedReader(new java.io.InputStreamReader(
+					ZipFilter.filterInputStream(new java.io.FileInputStream(files[i]))));
+				if (sorted)
+					_advance(i);
+			}
+		}
+		catch (java.io.IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	// concatenation of the lists of files
+	public static String[] concat(String[] files1, String[] files2) {
+		String[] files = java.util.Arrays.copyOf(files1, files1.length + files2.length);
+		System.arraycopy(files2, 0, files, files1.length, files2.length);
+		return files;
+	}
+
+	// the fields of the next line, or null at the end
+	public String[] next() throws java.io.IOException {
+		if (!_sorted) {
+			for (; _current < _inputs.length; ++_current) {
+				String s = _inputs[_current].readLine();
+				if (s != null)
+					return _split(s);
+			}
+			return null;
+		}
+
+		int i_min = -1;
+		for (int i = 0; i < _lines.length; ++i)
+			if (_lines[i] != null && (i_min == -1 || _pos[i] < _pos[i_min]))
+				i_min = i;
+		if (i_min == -1)
+			return null;
+
+		String[] t = _lines[i_min];
+		_advance(i_min);
+		return t;
+	}
+
+	public void close() throws java.io.IOException {
+		for (int i = 0; i < _inputs.length; ++i)
+			if (_inputs[i] != null)
+				_inputs[i].close();
+	}
+
+	private void _advance(int i) throws java.io.IOException {
+		String s = _inputs[i].readLine();
+		_lines[i] = s != null ? _split(s) : null;
+		if (s != null) {
+			int pos = Integer.parseInt(_lines[i][1]);
+			if (pos < _pos[i])
+				throw new java.io.IOException(_files[i] + ": not sorted by the position");
+			_pos[i] = pos;
+		}
+	}
+
+	private static String[] _split(String s) {
+		String[] t = s.split("\t");
+		if (t.length > 3)
+			return t;
+		String[] u = java.util.Arrays.copyOf(t, 4);
+		for (int k = t.length; k < u.length; ++k)
+			u[k] = "";
+		return u;
+	}
+
+} // MutationFileReader
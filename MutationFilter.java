@@ -0,0 +1,41 @@
+
+//
+// Finds the donors to drop from their fractions of bad mutations and of
+//  mutations in MSI contexts
+//
+// NB. the donors are DonorDictionary ids and are kept in a bit set
+//
+
+public final class MutationFilter {
+
+	private final int[] _counts, _counts_bad, _counts_msi;
+	private final java.util.BitSet _dropped = new java.util.BitSet();
+
+	public MutationFilter(int donors) {
+		_counts = new int[donors];
+		_counts_bad = new int[donors];
+		_counts_msi = new int[donors];
+	}
+
+	// count a mutation of donor toward the fractions
+	public void count(int donor, boolean bad, boolean msi) {
+		++_counts[donor];
+		if (bad)
+			++_counts_bad[donor];
+		if (msi)
+			++_counts_msi[donor];
+	}
+
+	// drop the donors with more than the given fractions of bad or MSI mutations
+	// NB. donors without mutations counted are neither (0/0 is NaN)
+	public void dropDonors(double max_bad, double max_msi) {
+		for (int i = 0; i < _counts.length; ++i)
+			if ((double) _counts_bad[i] / (double) _counts[i] > max_bad || (double) _counts_msi[i] / (double) _counts[i] > max_msi)
+				_dropped.set(i);
+	}
+
+	public boolean dropped(int donor) {
+		return _dropped.get(donor);
+	}
+
+} // MutationFilter
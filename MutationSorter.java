@@ -0,0 +1,411 @@
+
+//
+// Sorts the mutation files written by MafSplitter (lines of sample, position,
+//  ref and alt) by the position and then the sample, in place
+//
+// NB. the lines are sorted in runs of bounded size that are merged afterwards,
+//  and the sort is stable, so the mutations of a sample at the same position
+//  stay in their original order
+//
+
+public final class MutationSorter {
+
+	private static final int _RUN_SIZE = 1 << 24;
+	private static final int _BUFFER_SIZE = 1 << 18;
+
+	// NB. the contents of the flag files, changes if the order of the lines does
+	private static final String _SORTED = "pos\tsample\n";
+
+	private final int _run_size;
+
+	public MutationSorter() {
+		this(_RUN_SIZE);
+	}
+
+	// sort in runs of about run_size bytes of lines
+	public MutationSorter(int run_size) {
+		if (run_size < 1)
+			throw new IllegalArgumentException("run_size must be positive");
+		_run_size = run_size;
+	}
+
+	// sort all the files in parallel
+	public void sort(String[] files) throws java.io.IOException {
+		TaskEx[] tasks = new TaskEx[files.length];
+		for (int i = 0; i < files.length; ++i) {
+			final String file = files[i];
+			tasks[i] = new TaskEx() {
+				public void runEx() throws java.io.IOException {
+					sort(file);
+				}
+			};
+		}
+
+		ThreadPool.invokeAll(tasks);
+	}
+
+	public void sort(String file) throws java.io.IOException {
+		java.io.File file_out = new java.io.File(file);
+		java.util.ArrayList<java.io.File> runs = new java.util.ArrayList<java.io.File>();
+
+		// NB. keep the name at the end, so that the sorted file gets the same compression
+		java.io.File file_sorted = _sibling(file_out, "Sorted_");
+		try {
+			_Run run = new _Run(file);
+			java.io.InputStream in = ZipFilter.filterInputStream(new java.io.FileInputStream(file));
+			try {
+				while (run.read(in, _run_size)) {
+					java.io.File file_run = new java.io.File(file_out.getParentFile(), "Run" + runs.size() + "_" + file_out.getName() + ".tmp");
+					runs.add(file_run);
+					java.io.OutputStream out = new java.io.BufferedOutputStream(new java.io.FileOutputStream(file_run), _BUFFER_SIZE);
+					try {
+						run.write(out);
+					}
+					finally {
+						out.close();
+					}
+				}
+			}
+			finally {
+				in.close();
+			}
+
+			// NB. the common case of a single run is written without merging
+			java.io.OutputStream out = new java.io.BufferedOutputStream(ZipFilter.filterOutputStream(new java.io.FileOutputStream(file_sorted), file_sorted), _BUFFER_SIZE);
+			try {
+				if (runs.isEmpty())
+					run.write(out);
+				else {
+					runs.add(null);
+					_merge(file, runs, run, out);
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			file_out.delete();
+			if (!file_sorted.renameTo(file_out))
+				throw new java.io.IOException(file + ": cannot replace with the sorted file");
+		}
+		finally {
+			for (int i = 0; i < runs.size(); ++i)
+				if (runs.get(i) != null)
+					runs.get(i).delete();
+			file_sorted.delete();
+		}
+	}
+
+	// record that the files are sorted
+	public static void setSorted(String file_flag) throws java.io.IOException {
+		java.io.OutputStream out = new java.io.FileOutputStream(file_flag);
+		try {
+			out.write(_SORTED.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	public static void clearSorted(String file_flag) {
+		new java.io.File(file_flag).delete();
+	}
+
+	// check if the files are known to be sorted
+	public static boolean isSorted(String file_flag) throws java.io.IOException {
+		java.io.File file = new java.io.File(file_flag);
+		if (!file.exists())
+			return false;
+		return new String(java.nio.file.Files.readAllBytes(file.toPath()), java.nio.charset.StandardCharsets.UTF_8).equals(_SORTED);
+	}
+
+	private static java.io.File _sibling(java.io.File file, String prefix) {
+		return new java.io.File(file.getParentFile(), prefix + file.getName());
+	}
+
+	// merge the runs, where the null one is the last run still in memory
+	private static void _merge(String file, java.util.ArrayList<java.io.File> runs, _Run last, java.io.OutputStream out) throws java.io.IOException {
+		java.util.PriorityQueue<_Cursor> queue = new java.util.PriorityQueue<_Cursor>(runs.size());
+		try {
+			for (int r = 0; r < runs.size(); ++r) {
+				_Cursor cursor = runs.get(r) != null ? new _FileCursor(file, r, runs.get(r)) : new _RunCursor(file, r, last);
+				if (cursor.next())
+					queue.add(cursor);
+				else
+					cursor.close();
+			}
+
+			while (!queue.isEmpty()) {
+				_Cursor cursor = queue.poll();
+				out.write(cursor.line, cursor.start, cursor.end - cursor.start);
+				out.write('\n');
+				if (cursor.next())
+					queue.add(cursor);
+				else
+					cursor.close();
+			}
+		}
+		finally {
+			for (_Cursor cursor : queue)
+				cursor.close();
+		}
+	}
+
+	// parse the position of the line in [start, end)
+	private static int _parsePos(String file, byte[] line, int start, int end) throws java.io.IOException {
+		int p = start;
+		while (p < end && line[p] != '\t')
+			++p;
+		int q = ++p;
+		while (q < end && line[q] != '\t')
+			++q;
+
+		try {
+			return Integer.parseInt(new String(line, p, Math.max(q - p, 0), java.nio.charset.StandardCharsets.ISO_8859_1));
+		}
+		catch (NumberFormatException e) {
+			throw new java.io.IOException(file + ": bad position in " + new String(line, start, end - start, java.nio.charset.StandardCharsets.UTF_8));
+		}
+	}
+
+	// compare the lines by the position, then by the sample (the bytes up to the first tab)
+	private static int _compare(int pos1, byte[] line1, int start1, int end1, int pos2, byte[] line2, int start2, int end2) {
+		if (pos1 != pos2)
+			return pos1 < pos2 ? -1 : 1;
+		for (int i = start1, j = start2; ; ++i, ++j) {
+			int c1 = i < end1 && line1[i] != '\t' ? line1[i] & 0xff : -1;
+			int c2 = j < end2 && line2[j] != '\t' ? line2[j] & 0xff : -1;
+			if (c1 != c2)
+				return c1 < c2 ? -1 : 1;
+			if (c1 == -1)
+				return 0;
+		}
+	}
+
+	//
+	// A run of lines sorted in memory
+	//
+
+	private static final class _Run {
+
+		final String file;
+
+		byte[] data = new byte[_BUFFER_SIZE];
+		int size = 0;
+		int lines = 0;
+		int[] start = new int[1 << 10], end = new int[1 << 10], pos = new int[1 << 10];
+		int[] order = new int[0];
+
+		private byte[] _buffer = new byte[_BUFFER_SIZE];
+		private int _begin = 0, _end = 0;
+		private boolean _eof = false;
+
+		_Run(String file) {
+			this.file = file;
+		}
+
+		// read and sort the next run of up to about run_size bytes, returns true if there is more input after it
+		boolean read(java.io.InputStream in, int run_size) throws java.io.IOException {
+			size = 0;
+			lines = 0;
+			while (size < run_size) {
+				int eol = _begin;
+				while (eol < _end && _buffer[eol] != '\n')
+					++eol;
+				if (eol == _end && !_eof) {
+					_fill(in);
+					continue;
+				}
+				if (eol == _begin && eol == _end)
+					break;
+
+				_add(_buffer, _begin, eol);
+				_begin = eol < _end ? eol + 1 : eol;
+			}
+
+			if (order.length < lines) {
+				order = new int[start.length];
+				_tmp = new int[start.length];
+			}
+			for (int i = 0; i < lines; ++i)
+				order[i] = i;
+			_sort(0, lines);
+
+			while (_begin == _end && !_eof)
+				_fill(in);
+			return _begin < _end;
+		}
+
+		void write(java.io.OutputStream out) throws java.io.IOException {
+			for (int i = 0; i < lines; ++i) {
+				int k = order[i];
+				out.write(data, start[k], end[k] - start[k]);
+				out.write('\n');
+			}
+		}
+
+		private void _add(byte[] line, int line_start, int line_end) throws java.io.IOException {
+			int length = line_end - line_start;
+			if (size + length > data.length)
+				data = java.util.Arrays.copyOf(data, Math.max(2 * data.length, size + length));
+			if (lines == start.length) {
+				start = java.util.Arrays.copyOf(start, 2 * lines);
+				end = java.util.Arrays.copyOf(end, 2 * lines);
+				pos = java.util.Arrays.copyOf(pos, 2 * lines);
+			}
+
+			System.arraycopy(line, line_start, data, size, length);
+			start[lines] = size;
+			end[lines] = size + length;
+			pos[lines] = _parsePos(file, data, size, size + length);
+			size += length;
+			++lines;
+		}
+
+		private void _fill(java.io.InputStream in) throws java.io.IOException {
+			if (_begin > 0) {
+				System.arraycopy(_buffer, _begin, _buffer, 0, _end - _begin);
+				_end -= _begin;
+				_begin = 0;
+			}
+			if (_end == _buffer.length)
+				_buffer = java.util.Arrays.copyOf(_buffer, 2 * _buffer.length);
+
+			int count = in.read(_buffer, _end, _buffer.length - _end);
+			if (count < 0)
+				_eof = true;
+			else
+				_end += count;
+		}
+
+		private int[] _tmp = new int[0];
+
+		private int _compare(int i, int j) {
+			return MutationSorter._compare(pos[i], data, start[i], end[i], pos[j], data, start[j], end[j]);
+		}
+
+		// stable merge sort of order[from, to)
+		private void _sort(int from, int to) {
+			if (to - from < 2)
+				return;
+			int mid = (from + to) >>> 1;
+			_sort(from, mid);
+			_sort(mid, to);
+			if (_compare(order[mid - 1], order[mid]) <= 0)
+				return;
+
+			System.arraycopy(order, from, _tmp, from, to - from);
+			for (int i = from, j = mid, k = from; k < to; ++k) {
+				if (j == to || (i < mid && _compare(_tmp[i], _tmp[j]) <= 0))
+					order[k] = _tmp[i++];
+				else
+					order[k] = _tmp[j++];
+			}
+		}
+
+	} // _Run
+
+	//
+	// The current line of a run being merged
+	//
+
+	private static abstract class _Cursor implements Comparable<_Cursor> {
+
+		final String file;
+		final int run;
+		byte[] line;
+		int start, end, pos;
+
+		_Cursor(String file, int run) {
+			this.file = file;
+			this.run = run;
+		}
+
+		// move to the next line, returns false at the end
+		abstract boolean next() throws java.io.IOException;
+
+		void close() throws java.io.IOException {
+		}
+
+		// NB. ties go to the earlier run, which keeps the sort stable
+		public int compareTo(_Cursor other) {
+			int c = _compare(pos, line, start, end, other.pos, other.line, other.start, other.end);
+			return c != 0 ? c : Integer.compare(run, other.run);
+		}
+
+	}
+
+	private static final class _RunCursor extends _Cursor {
+
+		private final _Run _run;
+		private int _i = 0;
+
+		_RunCursor(String file, int run, _Run last) {
+			super(file, run);
+			_run = last;
+			line = last.data;
+		}
+
+		boolean next() {
+			if (_i == _run.lines)
+				return false;
+			int k = _run.order[_i++];
+			start = _run.start[k];
+			end = _run.end[k];
+			pos = _run.pos[k];
+			return true;
+		}
+
+	}
+
+	private static final class _FileCursor extends _Cursor {
+
+		private final java.io.InputStream _in;
+		private byte[] _buffer = new byte[_BUFFER_SIZE];
+		private int _begin = 0, _end = 0;
+		private boolean _eof = false;
+
+		_FileCursor(String file, int run, java.io.File file_run) throws java.io.IOException {
+			super(file, run);
+			_in = new java.io.FileInputStream(file_run);
+		}
+
+		boolean next() throws java.io.IOException {
+			while (true) {
+				int eol = _begin;
+				while (eol < _end && _buffer[eol] != '\n')
+					++eol;
+				if (eol == _end && !_eof) {
+					if (_begin > 0) {
+						System.arraycopy(_buffer, _begin, _buffer, 0, _end - _begin);
+						_end -= _begin;
+						_begin = 0;
+					}
+					else if (_end == _buffer.length)
+						_buffer = java.util.Arrays.copyOf(_buffer, 2 * _buffer.length);
+					int count = _in.read(_buffer, _end, _buffer.length - _end);
+					if (count < 0)
+						_eof = true;
+					else
+						_end += count;
+					continue;
+				}
+				if (eol == _begin && eol == _end)
+					return false;
+
+				line = _buffer;
+				start = _begin;
+				end = eol;
+				pos = _parsePos(file, line, start, end);
+				_begin = eol < _end ? eol + 1 : eol;
+				return true;
+			}
+		}
+
+		void close() throws java.io.IOException {
+			_in.close();
+		}
+
+	}
+
+} // MutationSorter
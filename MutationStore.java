@@ -0,0 +1,307 @@
+
+//
+// The mutations of a chromosome in columns of primitives, grouped into
+//  consecutive bins of positions and with the donors as DonorDictionary ids
+//
+// NB. the mutations are kept in stores from the reading on, first in a bin
+//  for each donor, and the stores of the later stages are copies of the
+//  columns in another order, so that no objects are made per mutation
+//
+
+public final class MutationStore {
+
+	private static final int _CODING = 1 << 0;
+	private static final int _MSI = 1 << 1;
+	private static final int _MSI2 = 1 << 2;
+	private static final int _EXCLUDE = 1 << 3;
+	private static final int _GROUP_SHIFT = 8;
+
+	private final int[] _pos;
+	private final int[] _donor;
+	private final int[] _flags;           // NB. the flags above, and the group in the high bits
+	private final int[] _allele_offset;   // NB. the alleles of k are at [_allele_offset[k], _allele_offset[k + 1])
+	private final byte[] _alleles;        // NB. ref, a zero byte, then alt
+	private final DonorDictionary _donors;
+	private final int[] _bin_offset;      // NB. the mutations of bin j are at [_bin_offset[j], _bin_offset[j + 1])
+
+	private MutationStore(int[] pos, int[] donor, int[] flags, int[] allele_offset, byte[] alleles, DonorDictionary donors, int[] bin_offset) {
+		_pos = pos;
+		_donor = donor;
+		_flags = flags;
+		_allele_offset = allele_offset;
+		_alleles = alleles;
+		_donors = donors;
+		_bin_offset = bin_offset;
+	}
+
+	// number of mutations
+	public int size() {
+		return _pos.length;
+	}
+
+	// number of bins
+	public int bins() {
+		return _bin_offset.length - 1;
+	}
+
+	// index of the first mutation of bin j
+	public int start(int j) {
+		return _bin_offset[j];
+	}
+
+	// index past the last mutation of bin j
+	public int end(int j) {
+		return _bin_offset[j + 1];
+	}
+
+	public int pos(int k) {
+		return _pos[k];
+	}
+
+	// DonorDictionary id of the donor of mutation k
+	public int donor(int k) {
+		return _donor[k];
+	}
+
+	public DonorDictionary donors() {
+		return _donors;
+	}
+
+	public boolean coding(int k) {
+		return (_flags[k] & _CODING) != 0;
+	}
+
+	public int group(int k) {
+		return _flags[k] >> _GROUP_SHIFT;
+	}
+
+	public boolean msi(int k) {
+		return (_flags[k] & _MSI) != 0;
+	}
+
+	public boolean msi2(int k) {
+		return (_flags[k] & _MSI2) != 0;
+	}
+
+	public boolean exclude(int k) {
+		return (_flags[k] & _EXCLUDE) != 0;
+	}
+
+	public int refLength(int k) {
+		return _refEnd(k) - _allele_offset[k];
+	}
+
+	public int altLength(int k) {
+		return _allele_offset[k + 1] - _refEnd(k) - 1;
+	}
+
+	public String ref(int k) {
+		return new String(_alleles, _allele_offset[k], refLength(k), java.nio.charset.StandardCharsets.ISO_8859_1);
+	}
+
+	public String alt(int k) {
+		return new String(_alleles, _refEnd(k) + 1, altLength(k), java.nio.charset.StandardCharsets.ISO_8859_1);
+	}
+
+	// the ref allele of k as a single base (of an SNV)
+	public char refBase(int k) {
+		return (char) (_alleles[_allele_offset[k]] & 0xff);
+	}
+
+	// the alt allele of k as a single base (of an SNV)
+	public char altBase(int k) {
+		return (char) (_alleles[_refEnd(k) + 1] & 0xff);
+	}
+
+	// NB. the setters are for the annotation of the mutations, before the store is shared
+
+	public void setCoding(int k, boolean coding) {
+		_flags[k] = coding ? _flags[k] | _CODING : _flags[k] & ~_CODING;
+	}
+
+	public void setGroup(int k, int group) {
+		_flags[k] = (_flags[k] & ((1 << _GROUP_SHIFT) - 1)) | (group << _GROUP_SHIFT);
+	}
+
+	public void setMsi(int k, boolean msi, boolean msi2) {
+		_flags[k] = (_flags[k] & ~(_MSI | _MSI2)) | (msi ? _MSI : 0) | (msi2 ? _MSI2 : 0);
+	}
+
+	public void setExclude(int k, boolean exclude) {
+		_flags[k] = exclude ? _flags[k] | _EXCLUDE : _flags[k] & ~_EXCLUDE;
+	}
+
+	private int _refEnd(int k) {
+		int i = _allele_offset[k];
+		while (_alleles[i] != 0)
+			++i;
+		return i;
+	}
+
+	// view with every factor consecutive bins merged into one (the columns are shared)
+	public MutationStore merge(int factor, int bins) {
+		int[] bin_offset = new int[bins + 1];
+		for (int j = 0; j <= bins; ++j)
+			bin_offset[j] = _bin_offset[Math.min(j * factor, bins())];
+		if (bin_offset[bins] != size())
+			throw new IllegalArgumentException("bins out of range");
+
+		return new MutationStore(_pos, _donor, _flags, _allele_offset, _alleles, _donors, bin_offset);
+	}
+
+	// the mutations with a bin for each donor, in the same order within each
+	public MutationStore byDonor() {
+		int donors = _donors.size();
+		int[] bin_offset = new int[donors + 1];
+		for (int k = 0; k < size(); ++k)
+			++bin_offset[_donor[k] + 1];
+		for (int j = 0; j < donors; ++j)
+			bin_offset[j + 1] += bin_offset[j];
+
+		int[] order = new int[size()];
+		int[] next = java.util.Arrays.copyOf(bin_offset, donors);
+		for (int k = 0; k < size(); ++k)
+			order[next[_donor[k]]++] = k;
+
+		return _select(order, order.length, bin_offset);
+	}
+
+	// the mutations order[i] (all in order if null) that are not removed[i] (none if null) and at or
+	//  after shift, into bins of size positions from shift, in the same order within each bin
+	public MutationStore bin(int[] order, boolean[] removed, int shift, int size, int bins) {
+		int[] bin_offset = new int[bins + 1];
+		for (int i = 0; i < size(); ++i) {
+			int k = order != null ? order[i] : i;
+			if ((removed == null || !removed[i]) && _pos[k] >= shift)
+				++bin_offset[(_pos[k] - shift) / size + 1];
+		}
+		for (int j = 0; j < bins; ++j)
+			bin_offset[j + 1] += bin_offset[j];
+
+		int[] selected = new int[bin_offset[bins]];
+		int[] next = java.util.Arrays.copyOf(bin_offset, bins);
+		for (int i = 0; i < size(); ++i) {
+			int k = order != null ? order[i] : i;
+			if ((removed == null || !removed[i]) && _pos[k] >= shift)
+				selected[next[(_pos[k] - shift) / size]++] = k;
+		}
+
+		return _select(selected, selected.length, bin_offset);
+	}
+
+	// the mutations that are not removed[k], in the same bins and order
+	public MutationStore remove(boolean[] removed) {
+		int[] bin_offset = new int[bins() + 1];
+		int[] selected = new int[size()];
+		int count = 0;
+		for (int j = 0; j < bins(); ++j) {
+			for (int k = start(j); k < end(j); ++k)
+				if (!removed[k])
+					selected[count++] = k;
+			bin_offset[j + 1] = count;
+		}
+
+		return _select(selected, count, bin_offset);
+	}
+
+	// copy of the columns of the mutations order[i < count] into the bins
+	private MutationStore _select(int[] order, int count, int[] bin_offset) {
+		int alleles_size = 0;
+		for (int i = 0; i < count; ++i)
+			alleles_size += _allele_offset[order[i] + 1] - _allele_offset[order[i]];
+
+		int[] pos = new int[count], donor = new int[count], flags = new int[count];
+		int[] allele_offset = new int[count + 1];
+		byte[] alleles = new byte[alleles_size];
+		int offset = 0;
+		for (int i = 0; i < count; ++i) {
+			int k = order[i];
+			pos[i] = _pos[k];
+			donor[i] = _donor[k];
+			flags[i] = _flags[k];
+			allele_offset[i] = offset;
+			int length = _allele_offset[k + 1] - _allele_offset[k];
+			System.arraycopy(_alleles, _allele_offset[k], alleles, offset, length);
+			offset += length;
+		}
+		allele_offset[count] = offset;
+
+		return new MutationStore(pos, donor, flags, allele_offset, alleles, _donors, bin_offset);
+	}
+
+	//
+	// Collects the mutations bin by bin
+	//
+
+	public static final class Builder {
+
+		private int _size = 0;
+		private int[] _pos = new int[1 << 10];
+		private int[] _donor = new int[1 << 10];
+		private int[] _flags = new int[1 << 10];
+		private int[] _allele_offset = new int[(1 << 10) + 1];
+		private byte[] _alleles = new byte[1 << 12];
+		private int _alleles_size = 0;
+
+		private final DonorDictionary _donors;
+
+		private int _bins = 0;
+		private int[] _bin_offset = new int[1 << 10];
+
+		public Builder(DonorDictionary donors) {
+			_donors = donors;
+		}
+
+		// add a mutation to the current bin
+		public void add(int pos, String ref, String alt, int donor, boolean coding, int group, boolean msi, boolean msi2, boolean exclude) {
+			if (_size == _pos.length) {
+				int capacity = 2 * _size;
+				_pos = java.util.Arrays.copyOf(_pos, capacity);
+				_donor = java.util.Arrays.copyOf(_donor, capacity);
+				_flags = java.util.Arrays.copyOf(_flags, capacity);
+				_allele_offset = java.util.Arrays.copyOf(_allele_offset, capacity + 1);
+			}
+
+			_pos[_size] = pos;
+			_donor[_size] = donor;
+			_flags[_size] = (coding ? _CODING : 0) | (msi ? _MSI : 0) | (msi2 ? _MSI2 : 0) | (exclude ? _EXCLUDE : 0) | (group << _GROUP_SHIFT);
+			_allele_offset[_size] = _alleles_size;
+			_addAllele(ref);
+			_addByte((byte) 0);
+			_addAllele(alt);
+			++_size;
+		}
+
+		// close the current bin
+		public void endBin() {
+			if (_bins + 1 == _bin_offset.length)
+				_bin_offset = java.util.Arrays.copyOf(_bin_offset, 2 * _bin_offset.length);
+			_bin_offset[++_bins] = _size;
+		}
+
+		public MutationStore build() {
+			_allele_offset[_size] = _alleles_size;
+			return new MutationStore(
+				java.util.Arrays.copyOf(_pos, _size),
+				java.util.Arrays.copyOf(_donor, _size),
+				java.util.Arrays.copyOf(_flags, _size),
+				java.util.Arrays.copyOf(_allele_offset, _size + 1),
+				java.util.Arrays.copyOf(_alleles, _alleles_size),
+				_donors,
+				java.util.Arrays.copyOf(_bin_offset, _bins + 1));
+		}
+
+		private void _addAllele(String allele) {
+			for (int i = 0; i < allele.length(); ++i)
+				_addByte((byte) allele.charAt(i));
+		}
+
+		private void _addByte(byte value) {
+			if (_alleles_size == _alleles.length)
+				_alleles = java.util.Arrays.copyOf(_alleles, 2 * _alleles.length);
+			_alleles[_alleles_size++] = value;
+		}
+
+	} // Builder
+
+} // MutationStore
@@ -0,0 +1,70 @@
+
+//
+// Counts the mutations at each position of a bin, by sorting the positions
+//  and run-length encoding them, in buffers that are reused over the bins
+//
+
+public final class PositionCounter {
+
+	private int[] _pos = new int[64];
+	private int[] _counts = new int[64];
+	private int _size = 0, _runs = 0, _max = 0;
+
+	// start counting a new bin
+	public void clear() {
+		_size = 0;
+		_runs = 0;
+		_max = 0;
+	}
+
+	public void add(int pos) {
+		if (_size == _pos.length)
+			_pos = java.util.Arrays.copyOf(_pos, 2 * _size);
+		_pos[_size++] = pos;
+	}
+
+	// number of the positions added
+	public int size() {
+		return _size;
+	}
+
+	// count the runs of the positions added, in order of the position
+	// NB. the positions are then overwritten by the distinct ones
+	public void count() {
+		java.util.Arrays.sort(_pos, 0, _size);
+		if (_counts.length < _size)
+			_counts = new int[_pos.length];
+
+		_runs = 0;
+		_max = 0;
+		for (int i = 0; i < _size; ) {
+			int j = i + 1;
+			while (j < _size && _pos[j] == _pos[i])
+				++j;
+			_pos[_runs] = _pos[i];
+			_counts[_runs] = j - i;
+			_max = Math.max(_max, j - i);
+			++_runs;
+			i = j;
+		}
+	}
+
+	// number of the distinct positions
+	public int runs() {
+		return _runs;
+	}
+
+	public int position(int run) {
+		return _pos[run];
+	}
+
+	public int multiplicity(int run) {
+		return _counts[run];
+	}
+
+	// largest number of mutations at a position, 0 if none
+	public int maxMultiplicity() {
+		return _max;
+	}
+
+} // PositionCounter
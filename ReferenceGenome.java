@@ -0,0 +1,218 @@
+
+//
+// A read-only reference sequence of a chromosome, decoded once
+//  into a cache file of one byte per base and memory mapped from it
+//
+
+public final class ReferenceGenome {
+
+	// NB. the lines of the FASTA files are expected to hold this many bases
+	public static final int LINE_LENGTH = 50;
+
+	private static final String _CACHE_SUFFIX = ".bases";
+
+	// NB. the header of the cache files: the magic, the format version, and the size and the modification time
+	//  of the source, so that the caches of another format or of a changed source are rebuilt
+	private static final int _CACHE_MAGIC = 0x534e4343;   // "SNCC"
+	private static final int _CACHE_VERSION = 1;
+	private static final int _CACHE_HEADER = 4 + 4 + 8 + 8;
+
+	// NB. folder for the cache files, if null the sequences are decoded into memory instead
+	public static String cache_folder = null;
+
+	private final java.nio.ByteBuffer _bases;
+	private final int _length;
+
+	private ReferenceGenome(java.nio.ByteBuffer bases) {
+		_bases = bases;
+		_length = bases.capacity();
+	}
+
+	// number of positions, including the padding of short lines
+	public int length() {
+		return _length;
+	}
+
+	// reference base (upper case) at the 1-based position pos, or 'N' if out of range
+	public char at(int pos) {
+		if (pos < 1 || pos > _length)
+			return 'N';
+		return (char) (_bases.get(pos - 1) & 0xff);
+	}
+
+	// copy the bases of the 1-based positions [pos, pos + count) into bases, 'N' if out of range
+	public void get(int pos, byte[] bases, int offset, int count) {
+		for (int i = 0; i < count; ++i, ++pos)
+			bases[offset + i] = pos < 1 || pos > _length ? (byte) 'N' : _bases.get(pos - 1);
+	}
+
+	// get the sequence of a FASTA file (shared between all the threads)
+	public static ReferenceGenome open(final String file_fa) throws java.io.IOException {
+		if (cache_folder == null)
+			return AnnotationCache.get("genome:" + file_fa, new AnnotationCache.Loader<ReferenceGenome>() {
+				public ReferenceGenome load() throws java.io.IOException {
+					return new ReferenceGenome(java.nio.ByteBuffer.wrap(_decode(file_fa)));
+				}
+			});
+
+		final java.io.File file_cache = cacheFile(file_fa, _CACHE_SUFFIX);
+		return AnnotationCache.getMapped("genome:" + file_cache.getPath(), new AnnotationCache.Loader<ReferenceGenome>() {
+			public ReferenceGenome load() throws java.io.IOException {
+				return new ReferenceGenome(mapCacheFile(file_fa, file_cache, new CacheWriter() {
+					public void write(java.io.OutputStream out) throws java.io.IOException {
+						_decode(file_fa, out);
+					}
+				}));
+			}
+		});
+	}
+
+	public static interface CacheWriter {
+		public void write(java.io.OutputStream out) throws java.io.IOException;
+	}
+
+	// cache file in cache_folder for data derived from file_fa
+	// NB. named after the file and a hash of its full path, so that the sources of the same name in
+	//  different folders don't share the cache
+	public static java.io.File cacheFile(String file_fa, String suffix) {
+		java.io.File file_source = new java.io.File(file_fa).getAbsoluteFile();
+		return new java.io.File(cache_folder, String.format("%s_%08x%s", file_source.getName(), file_source.getPath().hashCode(), suffix));
+	}
+
+	// map the cache file derived from file_fa, (re)writing it first if needed
+	public static java.nio.ByteBuffer mapCacheFile(String file_fa, java.io.File file_cache, CacheWriter writer) throws java.io.IOException {
+		// NB. the size and the time of the zip entry for the files inside zips
+		java.io.File file_source = new java.io.File(file_fa);
+		return mapCacheFile(ZipOverlay.length(file_source), ZipOverlay.lastModified(file_source), file_cache, writer);
+	}
+
+	// map the cache file derived from a source of source_size and source_time, (re)writing it first if
+	//  it is missing, of another format, or of another source
+	// NB. the mapping starts after the header
+	public static java.nio.ByteBuffer mapCacheFile(long source_size, long source_time, java.io.File file_cache, CacheWriter writer) throws java.io.IOException {
+		java.nio.channels.FileChannel channel = _openCacheFile(file_cache, source_size, source_time);
+		if (channel == null) {
+			_writeCacheFile(file_cache, source_size, source_time, writer);
+			channel = java.nio.channels.FileChannel.open(file_cache.toPath(), java.nio.file.StandardOpenOption.READ);
+		}
+
+		try {
+			// NB. the mapping stays valid after the channel is closed
+			return channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, _CACHE_HEADER, channel.size() - _CACHE_HEADER);
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	// open the cache file if it exists and its header matches, null otherwise
+	private static java.nio.channels.FileChannel _openCacheFile(java.io.File file_cache, long source_size, long source_time) throws java.io.IOException {
+		if (!file_cache.exists())
+			return null;
+
+		java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file_cache.toPath(), java.nio.file.StandardOpenOption.READ);
+		boolean valid = false;
+		try {
+			java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(_CACHE_HEADER);
+			while (header.hasRemaining() && channel.read(header) >= 0)
+				;
+			valid = !header.hasRemaining() &&
+				header.getInt(0) == _CACHE_MAGIC && header.getInt(4) == _CACHE_VERSION &&
+				header.getLong(8) == source_size && header.getLong(16) == source_time;
+		}
+		finally {
+			if (!valid)
+				channel.close();
+		}
+		return valid ? channel : null;
+	}
+
+	private static void _writeCacheFile(java.io.File file_cache, long source_size, long source_time, CacheWriter writer) throws java.io.IOException {
+		java.io.File folder = file_cache.getAbsoluteFile().getParentFile();
+		if (!folder.exists())
+			folder.mkdirs();
+
+		// NB. write to a temporary first, so that concurrent runs never see a partial cache
+		java.io.File file_temp = java.io.File.createTempFile(file_cache.getName(), ".tmp", folder);
+		try {
+			java.io.OutputStream out = new java.io.BufferedOutputStream(new java.io.FileOutputStream(file_temp), 1 << 20);
+			try {
+				java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(_CACHE_HEADER);
+				header.putInt(_CACHE_MAGIC).putInt(_CACHE_VERSION).putLong(source_size).putLong(source_time);
+				out.write(header.array());
+				writer.write(out);
+			}
+			finally {
+				out.close();
+			}
+
+			try {
+				java.nio.file.Files.move(file_temp.toPath(), file_cache.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (java.nio.file.AtomicMoveNotSupportedException error) {
+				java.nio.file.Files.move(file_temp.toPath(), file_cache.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			file_temp.delete();
+		}
+	}
+
+	private static byte[] _decode(String file_fa) throws java.io.IOException {
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(1 << 20);
+		_decode(file_fa, out);
+		return out.toByteArray();
+	}
+
+	// decode the FASTA into LINE_LENGTH bases per line, skipping the header line
+	// NB. short lines are padded with 'N' and the bases beyond LINE_LENGTH are ignored, so that
+	//  the position p is always at the offset p - 1
+	private static void _decode(String file_fa, java.io.OutputStream out) throws java.io.IOException {
+		java.io.InputStream in = ZipFilter.filterInputStream(ZipOverlay.fileInputStream(file_fa));
+		try {
+			byte[] buffer = new byte[1 << 16];
+			byte[] line = new byte[LINE_LENGTH];
+			int line_count = -1;   // NB. the header
+			int fill = 0;
+			boolean in_line = false;
+			boolean after_cr = false;
+
+			for (int count; (count = in.read(buffer)) > 0; ) {
+				for (int i = 0; i < count; ++i) {
+					byte c = buffer[i];
+					if (c == '\n' && after_cr) {
+						after_cr = false;
+						continue;
+					}
+					after_cr = c == '\r';
+
+					if (c == '\n' || c == '\r') {
+						if (line_count >= 0)
+							_writeLine(out, line, fill);
+						++line_count;
+						fill = 0;
+						in_line = false;
+					}
+					else {
+						if (fill < LINE_LENGTH)
+							line[fill++] = (byte) Character.toUpperCase((char) (c & 0xff));
+						in_line = true;
+					}
+				}
+			}
+
+			if (in_line && line_count >= 0)
+				_writeLine(out, line, fill);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void _writeLine(java.io.OutputStream out, byte[] line, int fill) throws java.io.IOException {
+		for (int i = fill; i < LINE_LENGTH; ++i)
+			line[i] = 'N';
+		out.write(line, 0, LINE_LENGTH);
+	}
+
+} // ReferenceGenome
@@ -0,0 +1,47 @@
+
+//
+// Derives the seeds of the random numbers from a tree of keys, such as the
+//  entity, the shift, the stage, the chromosome, and the bin, by mixing them
+//  into the seed of the parent as in SplitMix64
+//
+// NB. the seed of a node depends only on the keys on its path, not on the
+//  order in which the nodes are visited, so that the results don't depend on
+//  how the bins are split over the threads
+//
+
+public final class SeedTree {
+
+	private static final long _GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private SeedTree() {
+	}
+
+	// seed of the child key of seed
+	public static long derive(long seed, long key) {
+		return _mix(_mix(seed + _GOLDEN_GAMMA) ^ (key + 1) * _GOLDEN_GAMMA);
+	}
+
+	// seed of the child key of seed (a name, such as that of a stage)
+	// NB. String.hashCode() is specified, so that the seeds are the same for all the runs
+	public static long derive(long seed, String key) {
+		return derive(seed, key.hashCode());
+	}
+
+	// seed of the grandchild key2 of the child key1 of seed, e.g. a bin of a chromosome
+	public static long derive(long seed, long key1, long key2) {
+		return derive(derive(seed, key1), key2);
+	}
+
+	// uniform number in [0, 1) for the node key1, key2 of seed, without a generator
+	public static double uniform(long seed, long key1, long key2) {
+		return (derive(seed, key1, key2) >>> 11) * 0x1.0p-53;
+	}
+
+	// SplitMix64 finalizer (variant 13 of Stafford's mixers)
+	private static long _mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+} // SeedTree
@@ -43,18 +43,16 @@ public class SignificanceNoncoding {
 	static int do_readall = 0;
 	static int do_significance = 0;   // NB. <1 ~ no, 0 ~ automatic, >1 ~ yes
 	static int do_combine = 0;
+	static boolean sorted_mutations=false;   // NB. the MutationFiles are sorted by the position
 
 	static boolean delete_intermediate=false;
+	static boolean parallel_shifts=false;
+	static boolean parallel_entities=false;
+	static boolean fast_weights=false;   // NB. search the weights of the neighbouring bins instead of scanning the grid
+	static boolean fast_hotspot=false;   // NB. search the factor of the hotspot positions instead of scanning all of them
 
-	private static java.util.Random rng = new java.util.Random();
-
-	public static long[] Random_nextLongs(java.util.Random rng, int count) {
-		long[] values = new long[count];
-		for (int i = 0; i < count; ++i)
-			values[i] = rng.nextLong();
-
-		return values;
-	}
+	private static Long seed = null;
+	private static String folder_genome_cache = null;
 	
 	//parse arguments of the method and decide whether annotation files need to be downloaded
 	public static void main(String[] args){
@@ -100,8 +98,26 @@ public class SignificanceNoncoding {
 				else if(args[i].equals("-always_combine")){
 					do_combine=+1;
 				}
+				else if(args[i].equals("-parallel_shifts")){
+					parallel_shifts=true;
+				}
+				else if(args[i].equals("-parallel_entities")){
+					parallel_entities=true;
+				}
+				else if(args[i].equals("-fast_weights")){
+					fast_weights=true;
+				}
+				else if(args[i].equals("-fast_hotspot")){
+					fast_hotspot=true;
+				}
+				else if(args[i].startsWith("-threads=")){
+					ThreadPool.setThreads(Integer.parseInt(args[i].substring("-threads=".length())));
+				}
+				else if(args[i].startsWith("-genome_cache=")){
+					folder_genome_cache=args[i].substring("-genome_cache=".length());
+				}
 				else if(args[i].startsWith("-seed=")){
-					rng = new java.util.Random(Long.parseLong(args[i].substring("-seed=".length())));
+					seed = Long.parseLong(args[i].substring("-seed=".length()));
 				}
 				else{
 					arg.add(args[i]);	
@@ -125,8 +141,13 @@ public class SignificanceNoncoding {
 		
 	}
 	
-	//this method combines the execution of all subscripts, reformats input files for the subscripts and downloads annotation data if needed 
+	//entity can also be a comma separated list of entities, which are then analyzed in the same run
 	public static void execute(String entity, String file_list_mutation_files, String folder_annotation, String folder_auxiliary, boolean delete_intermediate, boolean download_annotations) throws java.io.IOException {
+		execute(entity.split(","), file_list_mutation_files, folder_annotation, folder_auxiliary, delete_intermediate, download_annotations);
+	}
+	
+	//this method combines the execution of all subscripts, reformats input files for the subscripts and downloads annotation data if needed 
+	public static void execute(String[] entities_sel, String file_list_mutation_files, String folder_annotation, String folder_auxiliary, boolean delete_intermediate, boolean download_annotations) throws java.io.IOException {
 		boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
 		if(isWindows){
 			separator="\\";
@@ -159,6 +180,14 @@ public class SignificanceNoncoding {
 		String folder_significance=folder_auxiliary+"Significance"+separator;
 		String folder_counts_all=folder_auxiliary+"CountsAll"+separator;
 		
+		//NB. the decoded reference genome is kept (also with -k) so that it can be reused by later runs
+		if(folder_genome_cache!=null){
+			ReferenceGenome.cache_folder=new File(folder_genome_cache).getAbsolutePath()+separator;
+		}
+		else{
+			ReferenceGenome.cache_folder=folder_auxiliary+"GenomeCache"+separator;
+		}
+		
 		if(!new File(folder_significance).exists()){
 			new File(folder_significance).mkdir();
 		}
@@ -190,6 +219,10 @@ public class SignificanceNoncoding {
 			String[][][] files_mut_snv=new String[entities.size()][chr.length][1];
 			String[][][] files_mut_indel=new String[entities.size()][chr.length][1];
 			String[][] files_donors=new String[entities.size()][1];
+			String[] files_sorted=new String[entities.size()];
+			for (int i=0;i<files.size();i++){
+				files_sorted[i]=folder_auxiliary+"MutationFiles"+separator+"Sorted_"+entities.get(i)+".txt";
+			}
 
 			String [] all_entities=to_array(entities);
 
@@ -216,147 +249,241 @@ public class SignificanceNoncoding {
 			if (input_done) {
 				if (do_mutationfiles == 0)
 				System.out.println("[<< reusing previous MutationFiles>>]");
+				sorted_mutations=true;
+				for (int i=0;i<files.size();i++){
+					sorted_mutations=sorted_mutations&&MutationSorter.isSorted(files_sorted[i]);
+				}
 			}
 			else {
+			String[][] files_in=new String[files.size()][];
+			String[][][] files_out=new String[files.size()][chr.length][2];
+			String[] files_donors_out=new String[files.size()];
 			for (int i=0;i<files.size();i++){
 				System.out.println(files.get(i));
-				
-				BufferedWriter[][] output= new BufferedWriter[chr.length][2];
-				ArrayList<String> donors=new ArrayList<String>();
+				files_in[i]=to_array(files.get(i));
 				for (int ii=0;ii<chr.length;ii++){
-					for (int jj=0;jj<2;jj++){
-						if(jj==0){
-							String file=folder_auxiliary+"MutationFiles"+separator+"Mutations_Chr"+chr[ii]+"_"+entities.get(i)+"_SNV.txt"+out_suffix;
-							files_mut_snv[i][ii][0]=file;
-							java.io.FileOutputStream out=new java.io.FileOutputStream(file);
-							output[ii][jj]= new BufferedWriter(new java.io.OutputStreamWriter(ZipFilter.filterOutputStream(out, file)));
-							
-						}
-						else{
-							String file=folder_auxiliary+"MutationFiles"+separator+"Mutations_Chr"+chr[ii]+"_"+entities.get(i)+"_Indel.txt"+out_suffix;
-							files_mut_indel[i][ii][0]=file;
-							java.io.FileOutputStream out=new java.io.FileOutputStream(file);
-							output[ii][jj]= new BufferedWriter(new java.io.OutputStreamWriter(ZipFilter.filterOutputStream(out, file)));
-						}
-					}
+					files_mut_snv[i][ii][0]=folder_auxiliary+"MutationFiles"+separator+"Mutations_Chr"+chr[ii]+"_"+entities.get(i)+"_SNV.txt"+out_suffix;
+					files_mut_indel[i][ii][0]=folder_auxiliary+"MutationFiles"+separator+"Mutations_Chr"+chr[ii]+"_"+entities.get(i)+"_Indel.txt"+out_suffix;
+					files_out[i][ii][0]=files_mut_snv[i][ii][0];
+					files_out[i][ii][1]=files_mut_indel[i][ii][0];
 				}
-				
 				files_donors[i][0]=folder_auxiliary+"MutationFiles"+separator+"Donors_"+entities.get(i)+".txt"+out_suffix;
-				java.io.FileOutputStream out_donor=new java.io.FileOutputStream(files_donors[i][0]);
-				BufferedWriter output_donor= new BufferedWriter(new java.io.OutputStreamWriter(ZipFilter.filterOutputStream(out_donor, files_donors[i][0])));
-		
-				for (int j=0;j<files.get(i).size();j++){
-					in=new FileInputStream(files.get(i).get(j));
-					input= new BufferedReader(new InputStreamReader(ZipFilter.filterInputStream(in)));
-					String[] header=input.readLine().split("	");
-					
-					int index_chr=index("Chromosome",header);
-					int index_pos=index("Position",header);
-					int index_ref=index("Reference_Allele",header);
-					int index_alt=index("Tumor_Seq_Allele",header);
-					int index_sample=index("Tumor_Sample_Barcode",header);
-					
-					
-					while((s=input.readLine())!=null){
-						String[] t=s.split("	");
-						int ii=index(t[index_chr],chr,chr2);
-						int jj=-1;
-						if(t[index_ref].length()==1&&t[index_alt].length()==1){
-							jj=0;
-						}
-						else{
-							jj=1;
-						}
-						if(ii!=-1){
-							output[ii][jj].write(t[index_sample]+"	"+t[index_pos]+"	"+t[index_ref]+"	"+t[index_alt]);
-							output[ii][jj].newLine();
-							if(!contains(t[index_sample],donors)){
-								donors.add(t[index_sample]);
-							}
-						}
-					
-					}
-					input.close();
-					
-				}
-				
-				for (int j=0;j<donors.size();j++){
-					output_donor.write(donors.get(j));
-					output_donor.newLine();
-				}
-				
-				for (int ii=0;ii<output.length;ii++){
-					for (int jj=0;jj<output[ii].length;jj++){
-						output[ii][jj].close();
-					}
+				files_donors_out[i]=files_donors[i][0];
+			}
+			
+			//NB. all the input files of all the entities are split in parallel
+			for (int i=0;i<files.size();i++){
+				MutationSorter.clearSorted(files_sorted[i]);
+			}
+			new MafSplitter(chr,chr2).split(files_in,files_out,files_donors_out);
+			
+			//NB. the split files are sorted by the position, so that the mutations can be read in order
+			ArrayList<String> files_sort=new ArrayList<String>();
+			for (int i=0;i<files.size();i++){
+				for (int ii=0;ii<chr.length;ii++){
+					files_sort.add(files_mut_snv[i][ii][0]);
+					files_sort.add(files_mut_indel[i][ii][0]);
 				}
-				output_donor.close();
 			}
+			new MutationSorter().sort(to_array(files_sort));
+			for (int i=0;i<files.size();i++){
+				MutationSorter.setSorted(files_sorted[i]);
+			}
+			sorted_mutations=true;
 			} // !input_done
 			System.out.println("A");
 
 			}
 
+			ArrayList<SubthreadShift> threads_readall=new ArrayList<SubthreadShift>();
+			boolean readall_shift0=false;
 			{
 			for (int i=0;i<4;i++){
 				if (do_readall == 0 ? !new File(folder_counts_all + separator + String.format("n_indel_quality2_%d.txt", i*2500) + out_suffix).exists() : do_readall > 0){
-					System.out.println(i);
-					CombinedStatistics_10.execute_read_mutations_all_entities(i*2500, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel);
+					readall_shift0|=i==0;
+					threads_readall.add(new SubthreadShift(false, false, i, null, i*2500, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel, 0));
 				}
 			}
 			}
 			{
-				long seeds[] = Random_nextLongs(rng, 4);
 			for (int i=0;i<4;i++){
+				//NB. the shift 0 of both engines writes the same CountsAll files (n_indel_quality2_0.txt, n_quality2_0.txt), and the existence checks
+				// are all done before any of the tasks runs, so the 100kb one is not queued with the 10kb one, which would redo it and race on the files
+				if (i==0&&readall_shift0){
+					continue;
+				}
 				if (do_readall == 0 ? !new File(folder_counts_all + separator + String.format("n_indel_quality2_%d.txt", i*25000) + out_suffix).exists() : do_readall > 0){
-					System.out.println(i);
-					CombinedStatistics_100.execute_read_mutations_all_entities(i*25000, folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors, files_mut_snv,  files_mut_indel);
+					threads_readall.add(new SubthreadShift(true, false, i, null, i*25000, folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors, files_mut_snv,  files_mut_indel, 0));
 				}
 			}
 			}
+			execute(threads_readall, parallel_shifts);
+			
+			//NB. the decoded annotation is kept in memory only if it is going to be reused
+			AnnotationCache.setEnabled(entities_sel.length>1);
+			//NB. the seed of an entity is derived from its name, the same as in a run of this entity alone
+			long seed_root=seed!=null?seed:new java.util.Random().nextLong();
+			ArrayList<SubthreadEntity> threads_entities=new ArrayList<SubthreadEntity>();
+			for (int k=0;k<entities_sel.length;k++){
+				threads_entities.add(new SubthreadEntity(entities_sel[k], folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel, SeedTree.derive(seed_root, entities_sel[k])));
+			}
+			execute(threads_entities, parallel_entities);
+			AnnotationCache.setEnabled(false);
+		
+			if(delete_intermediate){
+				if(download_annotations){
+					delete_annotation(folder_annotation);
+				}		
+				delete(folder_auxiliary+"Significance"+separator);
+				delete(folder_auxiliary+"CountsAll"+separator);
+				delete(folder_auxiliary+"MutationFiles"+separator);
+				//NB. the default cache is several GB, the one given by -genome_cache= is kept for the other runs
+				if(folder_genome_cache==null&&new File(ReferenceGenome.cache_folder).exists()){
+					delete(ReferenceGenome.cache_folder);
+				}
+					
+				for (int k=0;k<entities_sel.length;k++){
+					for (int i=0;i<4;i++){
+						delete(folder_auxiliary+entities_sel[k]+"_10kb_"+i*2500+separator);
+						delete(folder_auxiliary+entities_sel[k]+"_100kb_"+i*25000+separator);
+					}
+				}
 			
+
+			}
+		
+		}
+	}
+	
+	//this method computes the significance and combines the p-values for a single entity
+	public static void execute_entity(String entity, String folder_auxiliary, String folder_significance, String folder_annotation, String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel, long seed) throws java.io.IOException {
+			ArrayList<SubthreadShift> threads_significance=new ArrayList<SubthreadShift>();
 			{
-				long seeds[] = Random_nextLongs(rng, 4);
 			for (int i=0;i<4;i++){
 				if (do_significance == 0 ? !new File(folder_auxiliary + separator + "Significance" + separator + String.format("Significance_%s_%d.txt", entity, i*2500) + out_suffix).exists() : do_significance > 0){
-					System.out.println(i);
-					CombinedStatistics_10.execute(entity, i*2500, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel, new java.util.Random(seeds[i]));
+					threads_significance.add(new SubthreadShift(false, true, i, entity, i*2500, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel, SeedTree.derive(seed, 10000, i*2500)));
 				}
 			}
 			}
 			{
-				long seeds[] = Random_nextLongs(rng, 4);
 			for (int i=0;i<4;i++){
 				if (do_significance == 0 ? !new File(folder_auxiliary + separator + "Significance" + separator + String.format("Significance_100_%s_%d.txt", entity, i*25000) + out_suffix).exists() : do_significance > 0){
-					System.out.println(i);
-					CombinedStatistics_100.execute(entity, i*25000, folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors, files_mut_snv,  files_mut_indel, new java.util.Random(seeds[i]));
+					threads_significance.add(new SubthreadShift(true, true, i, entity, i*25000, folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors, files_mut_snv,  files_mut_indel, SeedTree.derive(seed, 100000, i*25000)));
 				}
 			}
 			}
+			execute(threads_significance, parallel_shifts);
 			
 			{
-				long seed = rng.nextLong();
 			if (do_combine == 0 ? !new File(folder_auxiliary + separator + String.format("FDR_Weighted_Combined_%s.txt", entity) + out_suffix).exists() : do_combine > 0){
-				Combine_PValues_FDR.execute(entity, folder_annotation, folder_significance,  folder_auxiliary, new java.util.Random(seed));
+				Combine_PValues_FDR.execute(entity, folder_annotation, folder_significance,  folder_auxiliary, new java.util.Random(SeedTree.derive(seed, "combine")));
 			}
 			}
+	}
+	
+	//Subthread to run the significance and the combination stages for a single entity
+	private static class SubthreadEntity extends ThreadEx{
+		String entity=null;
+		String folder_auxiliary=null;
+		String folder_significance=null;
+		String folder_annotation=null;
+		String folder_counts_all=null;
+		String[] all_entities=null;
+		String[][] files_donors=null;
+		String[][][] files_mut_snv=null;
+		String[][][] files_mut_indel=null;
+		long seed=0;
 		
-			if(delete_intermediate){
-				if(download_annotations){
-					delete_annotation(folder_annotation);
-				}		
-				delete(folder_auxiliary+"Significance"+separator);
-				delete(folder_auxiliary+"CountsAll"+separator);
-				delete(folder_auxiliary+"MutationFiles"+separator);
-					
-				for (int i=0;i<4;i++){
-					delete(folder_auxiliary+entity+"_10kb_"+i*2500+separator);
-					delete(folder_auxiliary+entity+"_100kb_"+i*25000+separator);
+		public SubthreadEntity(String entity, String folder_auxiliary, String folder_significance, String folder_annotation, String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel, long seed){
+			this.entity=entity;
+			this.folder_auxiliary=folder_auxiliary;
+			this.folder_significance=folder_significance;
+			this.folder_annotation=folder_annotation;
+			this.folder_counts_all=folder_counts_all;
+			this.all_entities=all_entities;
+			this.files_donors=files_donors;
+			this.files_mut_snv=files_mut_snv;
+			this.files_mut_indel=files_mut_indel;
+			this.seed=seed;
+		}
+		
+		public void runEx() throws java.io.IOException {
+			System.out.println(entity);
+			execute_entity(entity, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel, seed);
+		}
+	}
+	
+	//Subthread to run the read-all or the significance stage for a single interval offset
+	private static class SubthreadShift extends ThreadEx{
+		boolean large=false;
+		boolean significance=false;
+		int i=-1;
+		String entity=null;
+		int shift_mut=-1;
+		String folder_auxiliary=null;
+		String folder_significance=null;
+		String folder_annotation=null;
+		String folder_counts_all=null;
+		String[] all_entities=null;
+		String[][] files_donors=null;
+		String[][][] files_mut_snv=null;
+		String[][][] files_mut_indel=null;
+		long seed=0;
+		
+		public SubthreadShift(boolean large, boolean significance, int i, String entity, int shift_mut, String folder_auxiliary, String folder_significance, String folder_annotation, String folder_counts_all, String[] all_entities, String[][] files_donors, String[][][] files_mut_snv, String[][][] files_mut_indel, long seed){
+			this.large=large;
+			this.significance=significance;
+			this.i=i;
+			this.entity=entity;
+			this.shift_mut=shift_mut;
+			this.folder_auxiliary=folder_auxiliary;
+			this.folder_significance=folder_significance;
+			this.folder_annotation=folder_annotation;
+			this.folder_counts_all=folder_counts_all;
+			this.all_entities=all_entities;
+			this.files_donors=files_donors;
+			this.files_mut_snv=files_mut_snv;
+			this.files_mut_indel=files_mut_indel;
+			this.seed=seed;
+		}
+		
+		public void runEx() throws java.io.IOException {
+			System.out.println(i);
+			if(!significance&&!large){
+				CombinedStatistics_10.execute_read_mutations_all_entities(shift_mut, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel);
+			}
+			else if(!significance&&large){
+				CombinedStatistics_100.execute_read_mutations_all_entities(shift_mut, folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors, files_mut_snv,  files_mut_indel);
+			}
+			else if(!large){
+				CombinedStatistics_10.execute(entity, shift_mut, folder_auxiliary, folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors,  files_mut_snv,  files_mut_indel, new java.util.Random(seed));
+			}
+			else{
+				CombinedStatistics_100.execute(entity, shift_mut, folder_auxiliary,  folder_significance, folder_annotation, folder_counts_all,  all_entities, files_donors, files_mut_snv,  files_mut_indel, new java.util.Random(seed));
+			}
+		}
+	}
+	
+	//run the subthreads one after another, or all at the same time if requested (-parallel_shifts, -parallel_entities)
+	//NB. the seeds are derived from the entity and the shift, so the results do not depend on this
+	private static void execute(ArrayList<? extends ThreadEx> threads, boolean parallel){
+		if(!parallel){
+			for (int i=0;i<threads.size();i++){
+				threads.get(i).run();
+			}
+			return;
+		}
+		for (int i=0;i<threads.size();i++){
+			threads.get(i).start();
+		}
+		for (int i=0;i<threads.size();i++){
+			while(threads.get(i).isAlive()){
+				try{
+				threads.get(i).join();
+				}
+				catch(java.lang.InterruptedException e){
 				}
-			
-
 			}
-		
 		}
 	}
 	
@@ -0,0 +1,145 @@
+
+//
+// The SpliceAI scores of the SNVs of a chromosome, compiled once from the
+//  files of each 1Mb chunk into a cache file of sorted keys and threshold
+//  flags, and memory mapped from it
+//
+
+public final class SpliceIndex {
+
+	private static final String _CACHE_SUFFIX = ".splice";
+	private static final double _THRESHOLD = 0.5;
+
+	// NB. the flags, set if the larger of the first and the third, or of the second and the fourth score is over the threshold
+	public static final int FLAG_0 = 1 << 0;
+	public static final int FLAG_1 = 1 << 1;
+
+	private final java.nio.ByteBuffer _data;
+	private final int _count;
+
+	private SpliceIndex(java.nio.ByteBuffer data) {
+		_data = data;
+		_count = data.getInt(0);
+	}
+
+	// get the index of the files folder + chr + "_" + (j + 1) + ".txt" of the chunks j < chunks
+	//  (shared between all the threads)
+	// NB. without ReferenceGenome.cache_folder, the index is kept in memory instead
+	public static SpliceIndex open(final String folder, final String chr, final int chunks) throws java.io.IOException {
+		if (ReferenceGenome.cache_folder == null)
+			return AnnotationCache.get("splice:" + folder + chr + ":" + chunks, new AnnotationCache.Loader<SpliceIndex>() {
+				public SpliceIndex load() throws java.io.IOException {
+					java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(1 << 20);
+					_write(folder, chr, chunks, out);
+					return new SpliceIndex(java.nio.ByteBuffer.wrap(out.toByteArray()));
+				}
+			});
+
+		// NB. named after the folder, as the files are named just by the chromosome
+		final java.io.File file_cache = ReferenceGenome.cacheFile(folder, "_" + chr + "_" + chunks + _CACHE_SUFFIX);
+		return AnnotationCache.getMapped("splice:" + file_cache.getPath(), new AnnotationCache.Loader<SpliceIndex>() {
+			public SpliceIndex load() throws java.io.IOException {
+				// NB. the time of the folder doesn't change with the contents of the files, so the cache is
+				//  checked against a digest of the sizes of the chunks and the newest time of them
+				long size = 0, time = 0;
+				for (int j = 0; j < chunks; ++j) {
+					java.io.File file = new java.io.File(folder + chr + "_" + (j + 1) + ".txt");
+					size = 31 * size + ZipOverlay.length(file);
+					time = Math.max(time, ZipOverlay.lastModified(file));
+				}
+
+				return new SpliceIndex(ReferenceGenome.mapCacheFile(size, time, file_cache, new ReferenceGenome.CacheWriter() {
+					public void write(java.io.OutputStream out) throws java.io.IOException {
+						_write(folder, chr, chunks, out);
+					}
+				}));
+			}
+		});
+	}
+
+	// flags of the SNV to alt at pos in the file of chunk j, or -1 if it is not there
+	// NB. the chunk is that of the file, as the lookups never went across the files
+	public int flags(int j, int pos, char alt) {
+		long key = _key(j, pos, alt);
+		int lo = 0, hi = _count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long mid_key = _data.getLong(4 + 8 * mid);
+			if (mid_key < key)
+				lo = mid + 1;
+			else if (mid_key > key)
+				hi = mid - 1;
+			else
+				return _data.get(4 + 8 * _count + mid);
+		}
+		return -1;
+	}
+
+	private static long _key(int j, int pos, char alt) {
+		return (long) j << 40 | (pos & 0xffffffffL) << 8 | (alt & 0xff);
+	}
+
+	// compile the files of lines of the position, alt, and four scores
+	// NB. if an SNV appears several times in a file, the last line wins
+	private static void _write(String folder, String chr, int chunks, java.io.OutputStream out) throws java.io.IOException {
+		int count = 0;
+		long[] keys = new long[1 << 16];
+		byte[] flags = new byte[keys.length];
+
+		for (int j = 0; j < chunks; ++j) {
+			String file = folder + chr + "_" + (j + 1) + ".txt";
+			if (!ZipOverlay.exists(new java.io.File(file)))
+				continue;
+
+			java.io.BufferedReader input = new java.io.BufferedReader(new java.io.InputStreamReader(ZipFilter.filterInputStream(ZipOverlay.fileInputStream(file))));
+			try {
+				for (String s; (s = input.readLine()) != null; ) {
+					String[] t = s.split("\t");
+					double[] d = new double[]{ Double.parseDouble(t[2]), Double.parseDouble(t[3]), Double.parseDouble(t[4]), Double.parseDouble(t[5]) };
+
+					// NB. the lookups are by the position as a plain number and by a single base
+					int pos;
+					try {
+						pos = Integer.parseInt(t[0]);
+					}
+					catch (NumberFormatException e) {
+						continue;
+					}
+					if (!Integer.toString(pos).equals(t[0]) || t[1].length() != 1 || t[1].charAt(0) > 0xff)
+						continue;
+
+					if (count == keys.length) {
+						keys = java.util.Arrays.copyOf(keys, 2 * count);
+						flags = java.util.Arrays.copyOf(flags, 2 * count);
+					}
+					keys[count] = _key(j, pos, t[1].charAt(0));
+					flags[count] = (byte) ((Math.max(d[0], d[2]) >= _THRESHOLD ? FLAG_0 : 0) | (Math.max(d[1], d[3]) >= _THRESHOLD ? FLAG_1 : 0));
+					++count;
+				}
+			}
+			finally {
+				input.close();
+			}
+		}
+
+		// NB. the records are applied in order, so that the last one of a key wins
+		long[] sorted = java.util.Arrays.copyOf(keys, count);
+		java.util.Arrays.sort(sorted);
+		int n = 0;
+		for (int i = 0; i < count; ++i)
+			if (n == 0 || sorted[n - 1] != sorted[i])
+				sorted[n++] = sorted[i];
+
+		byte[] sorted_flags = new byte[n];
+		for (int i = 0; i < count; ++i)
+			sorted_flags[java.util.Arrays.binarySearch(sorted, 0, n, keys[i])] = flags[i];
+
+		java.io.DataOutputStream data = new java.io.DataOutputStream(out);
+		data.writeInt(n);
+		for (int i = 0; i < n; ++i)
+			data.writeLong(sorted[i]);
+		data.write(sorted_flags, 0, n);
+		data.flush();
+	}
+
+} // SpliceIndex
@@ -0,0 +1,10 @@
+public abstract class TaskEx implements java.util.concurrent.Callable<Void> {
+
+	public Void call() throws java.lang.Exception {
+		runEx();
+		return null;
+	}
+
+	public abstract void runEx() throws java.lang.Exception;
+
+}
@@ -0,0 +1,85 @@
+
+//
+// A pool of worker threads shared by all the subthreads of the analysis
+//
+
+public final class ThreadPool {
+
+	private static int _threads = java.lang.Runtime.getRuntime().availableProcessors();
+	private static java.util.concurrent.ForkJoinPool _pool = null;
+
+	// NB. takes effect only if called before the pool is first used
+	public static synchronized void setThreads(int threads) {
+		if (threads < 1)
+			throw new java.lang.IllegalArgumentException("threads must be positive");
+		_threads = threads;
+	}
+
+	public static synchronized int getThreads() {
+		return _threads;
+	}
+
+	private static synchronized java.util.concurrent.ForkJoinPool _getPool() {
+		if (_pool == null)
+			_pool = new java.util.concurrent.ForkJoinPool(_threads);
+		return _pool;
+	}
+
+	private static final class _Task extends java.util.concurrent.RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final java.util.concurrent.Callable<?> _callable;
+		private java.lang.Throwable _error = null;
+
+		_Task(java.util.concurrent.Callable<?> callable) {
+			_callable = callable;
+		}
+
+		protected void compute() {
+			try {
+				_callable.call();
+			}
+			catch (java.lang.Throwable error) {
+				_error = error;
+			}
+		}
+
+	}
+
+	// run the tasks in the pool and wait for all of them to complete, then rethrow the first failure
+	public static void invokeAll(java.util.concurrent.Callable<?>[] tasks) throws java.io.IOException {
+		java.util.concurrent.ForkJoinPool pool = _getPool();
+
+		_Task[] pending = new _Task[tasks.length];
+		for (int i = 0; i < tasks.length; ++i)
+			pending[i] = new _Task(tasks[i]);
+
+		// NB. from within the pool, fork so that a waiting worker can run the tasks itself
+		boolean in_pool = java.util.concurrent.ForkJoinTask.getPool() == pool;
+		for (int i = 0; i < pending.length; ++i) {
+			if (in_pool)
+				pending[i].fork();
+			else
+				pool.execute(pending[i]);
+		}
+
+		java.lang.Throwable error = null;
+		for (int i = 0; i < pending.length; ++i) {
+			pending[i].join();
+			if (error == null)
+				error = pending[i]._error;
+		}
+
+		if (error == null)
+			return;
+		if (error instanceof java.io.IOException)
+			throw (java.io.IOException) error;
+		if (error instanceof java.lang.RuntimeException)
+			throw (java.lang.RuntimeException) error;
+		if (error instanceof java.lang.Error)
+			throw (java.lang.Error) error;
+		throw new java.lang.RuntimeException(error);
+	}
+
+} // ThreadPool
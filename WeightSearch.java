@@ -0,0 +1,117 @@
+
+//
+// Finds the weight of a ring of neighbouring bins that maximizes the
+//  Gamma-Poisson likelihood of the counts, from the statistics of the bins
+//  collected once, by a golden-section search over the grid of the weights
+//  instead of a scan of all of it
+//
+// NB. the likelihood is evaluated at the same weights as on the grid, and
+//  summed in chunks of a fixed size, so that the results don't depend on the
+//  number of threads
+//
+
+public final class WeightSearch {
+
+	private static final int _CHUNK = 1 << 14;
+	private static final double _INV_PHI = (Math.sqrt(5.0) - 1.0) / 2.0;
+
+	private int[] _count = new int[1024];
+	private double[] _alpha = new double[1024], _beta = new double[1024];
+	private double[] _ring_alpha = new double[1024], _ring_beta = new double[1024];
+	private int _size = 0;
+
+	private double[] _values = null;   // NB. NaN if not evaluated
+	private double _max = -Double.MAX_VALUE;
+
+	// add a bin with count, the parameters without the ring, and those added by the ring at weight 1
+	public void add(int count, double alpha, double beta, double ring_alpha, double ring_beta) {
+		if (_size == _count.length) {
+			_count = java.util.Arrays.copyOf(_count, 2 * _size);
+			_alpha = java.util.Arrays.copyOf(_alpha, 2 * _size);
+			_beta = java.util.Arrays.copyOf(_beta, 2 * _size);
+			_ring_alpha = java.util.Arrays.copyOf(_ring_alpha, 2 * _size);
+			_ring_beta = java.util.Arrays.copyOf(_ring_beta, 2 * _size);
+		}
+		_count[_size] = count;
+		_alpha[_size] = alpha;
+		_beta[_size] = beta;
+		_ring_alpha[_size] = ring_alpha;
+		_ring_beta[_size] = ring_beta;
+		++_size;
+	}
+
+	// log-likelihood of the bins at weight w (the terms that are NaN are skipped)
+	public double likelihood(double w) throws java.io.IOException {
+		_Chunk[] chunks = new _Chunk[(_size + _CHUNK - 1) / _CHUNK];
+		for (int k = 0; k < chunks.length; ++k)
+			chunks[k] = new _Chunk(k * _CHUNK, Math.min(_size, (k + 1) * _CHUNK), w);
+		ThreadPool.invokeAll(chunks);
+
+		double sum = 0;
+		for (int k = 0; k < chunks.length; ++k)
+			sum += chunks[k]._sum;
+		return sum;
+	}
+
+	// weight i / grid of the largest likelihood, the smallest one if several
+	// NB. the search brackets a local maximum, so the weight 0 is checked separately
+	public double maximize(int grid) throws java.io.IOException {
+		_values = new double[grid + 1];
+		java.util.Arrays.fill(_values, Double.NaN);
+
+		int lo = 0, hi = grid;
+		while (hi - lo > 2) {
+			int m1 = lo + (int) Math.round((1 - _INV_PHI) * (hi - lo));
+			int m2 = lo + (int) Math.round(_INV_PHI * (hi - lo));
+			if (m1 == m2)
+				++m2;
+			if (_value(m1, grid) >= _value(m2, grid))
+				hi = m2;
+			else
+				lo = m1;
+		}
+
+		int best = 0;
+		_max = _value(0, grid);
+		for (int i = Math.max(lo, 1); i <= hi; ++i)
+			if (_value(i, grid) > _max) {
+				_max = _value(i, grid);
+				best = i;
+			}
+		return (double) (best) / grid;
+	}
+
+	// largest log-likelihood found by maximize()
+	public double max() {
+		return _max;
+	}
+
+	private double _value(int i, int grid) throws java.io.IOException {
+		if (Double.isNaN(_values[i]))
+			_values[i] = likelihood((double) (i) / grid);
+		return _values[i];
+	}
+
+	private final class _Chunk extends TaskEx {
+
+		private final int _start, _end;
+		private final double _w;
+		private double _sum = 0;
+
+		_Chunk(int start, int end, double w) {
+			_start = start;
+			_end = end;
+			_w = w;
+		}
+
+		public void runEx() {
+			for (int k = _start; k < _end; ++k) {
+				double pp = CombinedStatistics_10.log_gamma_poisson_ab(_count[k], _alpha[k] + _w * _ring_alpha[k], _beta[k] + _w * _ring_beta[k]);
+				if (!Double.isNaN(pp))
+					_sum += pp;
+			}
+		}
+
+	}
+
+} // WeightSearch
@@ -27,6 +27,12 @@ public final class ZipOverlay {
 		public java.io.InputStream fileInputStream() throws java.io.IOException;
 
 		public boolean exists();
+
+		public long length();
+
+		public long lastModified();
+
+		public void close() throws java.io.IOException;
 	}
 
 	private static class _FileObject implements _Object {
@@ -43,6 +49,17 @@ public final class ZipOverlay {
 		public boolean exists() {
 			return _file.exists();
 		}
+
+		public long length() {
+			return _file.length();
+		}
+
+		public long lastModified() {
+			return _file.lastModified();
+		}
+
+		public void close() {
+		}
 	}
 
 	private static class _ZipFileObject implements _Object {
@@ -65,6 +82,18 @@ public final class ZipOverlay {
 		public boolean exists() {
 			return true;
 		}
+
+		public long length() {
+			return _entry.getSize();
+		}
+
+		public long lastModified() {
+			return _entry.getTime();
+		}
+
+		public void close() throws java.io.IOException {
+			_zipFile.close();
+		}
 	}
 
 	private static _Object _locateFile(java.io.File file) throws java.io.IOException {
@@ -128,4 +157,26 @@ public final class ZipOverlay {
 		return exists(new java.io.File(name));
 	}
 
+	// size of the file or the zip entry (0 if it does not exist, -1 if not known)
+	public static long length(java.io.File file) throws java.io.IOException {
+		_Object object = _locateFile(file);
+		try {
+			return object.length();
+		}
+		finally {
+			object.close();
+		}
+	}
+
+	// modification time of the file or the zip entry (0 if it does not exist, -1 if not known)
+	public static long lastModified(java.io.File file) throws java.io.IOException {
+		_Object object = _locateFile(file);
+		try {
+			return object.lastModified();
+		}
+		finally {
+			object.close();
+		}
+	}
+
 } // ZipOverlay
@@ -7,22 +7,26 @@ shell() {
 	"$@"
 }
 
+# NB. all entities are analyzed in a single run, so that the annotation data is read only once
 run_Significance() {
-	entity="$1"
-	shell ../SignificanceNoncoding -Xmx60G -seed=123 -z "$entity" 'result_MutationFiles/MutationFiles.txt' 'result_Significance/'
+	entities="$1"
+	shell ../SignificanceNoncoding -Xmx60G -seed=123 -z "$entities" 'result_MutationFiles/MutationFiles.txt' 'result_Significance/'
 }
 
 mkdir -p 'result_Significance/'
 
+entities=''
 if [ "$#" -gt 1 ]; then
 	for entity in "$@"; do
-		run_Significance "$entity"
+		entities="${entities:+$entities,}$entity"
 	done
 else
 	for filename in 'result_MutationFiles/'*'.maf.gz'; do
 		entity="$(basename "$filename")"
 		entity="${entity%%.maf.gz}"
 
-		run_Significance "$entity"
+		entities="${entities:+$entities,}$entity"
 	done
 fi
+
+run_Significance "$entities"